@@ -0,0 +1,66 @@
+package uk.co.risk.assessment.message;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.Deck;
+import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.model.Table;
+
+/**
+ * Serialising a table update for a full table part way through a hand, with side pots and the
+ * flop out: with the serializers the server uses, and with plain Jackson reflection to compare.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageBenchmark {
+    
+    private final ObjectMapper server = new ObjectMapper().registerModule(new TableJsonModule());
+    private final ObjectMapper reflection = new ObjectMapper();
+    private Message message;
+    
+    @Setup
+    public void setUp() {
+        Table table = new Table();
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            Player p = new Player("player" + i);
+            p.setChips(1000 + i * 100);
+            table.getPlayers()[i] = p;
+        }
+        table.setDealer(0);
+        table.nextHand(0);
+        Deck deck = Deck.seeded(42);
+        deck.shuffle();
+        for (int i = 0; i < 3; i++) {
+            table.getCards()[i] = deck.deal();
+        }
+        message = new Message(MessageType.TEXT_MESSAGE);
+        message.setTable(table);
+        message.setPlayerName("player3");
+        message.setData("player3 put in 20 to call. Next to bet is: player4");
+        message.setCards(new Card[] { deck.deal(), deck.deal() });
+    }
+    
+    @Benchmark
+    public String tableModule() throws JsonProcessingException {
+        return server.writeValueAsString(message);
+    }
+    
+    @Benchmark
+    public String reflection() throws JsonProcessingException {
+        return reflection.writeValueAsString(message);
+    }
+}
@@ -0,0 +1,44 @@
+package uk.co.risk.assessment.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Shuffling and dealing everything a full table needs, the twenty hole cards and the board,
+ * through Game as a hand does. With the SecureRandom real games use, and a seeded Random.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeckBenchmark {
+    private static final int CARDS = Table.MAX_PLAYERS * 2 + 5;
+    
+    @Param({ "secure", "seeded" })
+    public String random;
+    
+    private Game game;
+    
+    @Setup
+    public void setUp() {
+        game = "secure".equals(random) ? new Game(null) : new Game(null, new Random(42));
+    }
+    
+    @Benchmark
+    public void shuffleAndDeal(Blackhole blackhole) {
+        game.getDeck().shuffle();
+        for (int i = 0; i < CARDS; i++) {
+            blackhole.consume(game.dealCard());
+        }
+    }
+}
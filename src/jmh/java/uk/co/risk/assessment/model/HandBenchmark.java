@@ -0,0 +1,52 @@
+package uk.co.risk.assessment.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Evaluating seven card hands and comparing them, over a fixed set of random deals so the branch
+ * predictor can't learn a single hand.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HandBenchmark {
+    // a power of two, so the next deal is just a mask
+    private static final int DEALS = 1024;
+    
+    private final Card[][] holeCards = new Card[DEALS][];
+    private final Card[][] boards = new Card[DEALS][];
+    private final Hand[] hands = new Hand[DEALS];
+    private int next;
+    
+    @Setup
+    public void setUp() {
+        Deck deck = Deck.seeded(42);
+        for (int i = 0; i < DEALS; i++) {
+            deck.shuffle();
+            holeCards[i] = new Card[] { deck.deal(), deck.deal() };
+            boards[i] = new Card[] { deck.deal(), deck.deal(), deck.deal(), deck.deal(), deck.deal() };
+            hands[i] = new Hand(holeCards[i], boards[i]);
+        }
+    }
+    
+    @Benchmark
+    public Hand construct() {
+        int i = next++ & (DEALS - 1);
+        return new Hand(holeCards[i], boards[i]);
+    }
+    
+    @Benchmark
+    public int betterThan() {
+        int i = next++ & (DEALS - 1);
+        return hands[i].betterThan(hands[(i + 1) & (DEALS - 1)]);
+    }
+}
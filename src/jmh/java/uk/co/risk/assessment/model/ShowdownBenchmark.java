@@ -0,0 +1,80 @@
+package uk.co.risk.assessment.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import uk.co.risk.assessment.dao.PlayerDAO;
+import uk.co.risk.assessment.message.NewPlayerMessage;
+
+/**
+ * A ten way all in: everyone has a different stack and has already gone all in but the last
+ * player, whose call is what's measured. It deals the rest of the board, then findWinners
+ * evaluates all ten hands and pays out every side pot.
+ *
+ * Each hand is set up fresh with a new deal, which is why this is a sample of single calls
+ * rather than a tight loop.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShowdownBenchmark {
+    
+    private final Action raise = new Action(ActionType.RAISE, 0);
+    private final Action call = new Action(ActionType.CALL, Action.NO_AMOUNT);
+    private PlayerDAO players;
+    private Game game;
+    private String lastToCall;
+    private long deal;
+    
+    @Setup
+    public void setUpPlayers() {
+        // a single hash iteration, logging in isn't what we're measuring
+        players = new PlayerDAO(null, 1, 1);
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            NewPlayerMessage player = new NewPlayerMessage();
+            player.setName("player" + i);
+            player.setPassword("password");
+            players.newPlayer(player);
+        }
+    }
+    
+    @Setup(Level.Invocation)
+    public void setUpHand() {
+        game = new Game(players, new Random(deal++));
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            Player p = players.getPlayer("player" + i);
+            // seat 0 deals, so seat 3 acts first and gets the biggest stack, everyone has to call all in
+            p.setChips(1000 + (i + 6) % Table.MAX_PLAYERS * 100);
+            for (int pot = 0; pot < Table.MAX_PLAYERS; pot++) {
+                p.setBet(pot, 0);
+            }
+            p.setPaused(false);
+            p.resetForNextHand();
+            game.handleAction(p.getName(), new Action(ActionType.SIT, Action.NO_AMOUNT));
+        }
+        Table table = game.getTable();
+        game.handleAction(table.getPlayers()[table.getDealer()].getName(), new Action(ActionType.DEAL, Action.NO_AMOUNT));
+        Player first = table.getPlayers()[table.getNextToBet()];
+        raise.setAmount(first.getChips() + first.totalBet());
+        game.handleAction(first.getName(), raise);
+        for (int i = 2; i < Table.MAX_PLAYERS; i++) {
+            game.handleAction(table.getPlayers()[table.getNextToBet()].getName(), call);
+        }
+        lastToCall = table.getPlayers()[table.getNextToBet()].getName();
+    }
+    
+    @Benchmark
+    public CommandResult tenWayShowdown() {
+        return game.handleAction(lastToCall, call);
+    }
+}
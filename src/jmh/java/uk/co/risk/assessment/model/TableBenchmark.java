@@ -0,0 +1,65 @@
+package uk.co.risk.assessment.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Pot handling with a full table where every stack is different, so each hand has nine side pots.
+ * nextHand sets the pots up through initialisePots and posts the blinds; allIn then has every
+ * player bet their whole stack, spreading each bet over the pots through makeBet.
+ *
+ * Putting the stacks back is part of each measurement, a few stores per player.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TableBenchmark {
+    
+    private final Table table = new Table();
+    
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            table.getPlayers()[i] = new Player("player" + i);
+        }
+        table.setDealer(0);
+    }
+    
+    private void resetStacks() {
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            Player p = table.getPlayers()[i];
+            p.setChips(1000 + i * 100);
+            for (int pot = 0; pot < Table.MAX_PLAYERS; pot++) {
+                p.setBet(pot, 0);
+            }
+            p.setAllIn(false);
+        }
+    }
+    
+    @Benchmark
+    public Table nextHand() {
+        resetStacks();
+        table.nextHand(0);
+        return table;
+    }
+    
+    @Benchmark
+    public Table allIn() {
+        resetStacks();
+        table.nextHand(0);
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            Player p = table.getPlayers()[table.getNextToBet()];
+            table.raise(p, p.getChips() + p.totalBet());
+            table.nextBetter();
+        }
+        return table;
+    }
+}
@@ -0,0 +1,74 @@
+package uk.co.risk.assessment.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import uk.co.risk.assessment.message.TableJsonModule;
+import uk.co.risk.assessment.model.Deck;
+import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.model.Table;
+
+/**
+ * Working out the delta for one bet at a full table part way through a hand, against turning the
+ * whole table into a tree as every update used to before diffing it.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DeltaBenchmark {
+    
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new TableJsonModule());
+    private final DeltaTracker deltas = new DeltaTracker();
+    private Table table;
+    private Player better;
+    private boolean raised;
+    
+    @Setup
+    public void setUp() {
+        table = new Table();
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            Player p = new Player("player" + i);
+            p.setChips(1000 + i * 100);
+            table.getPlayers()[i] = p;
+        }
+        table.setDealer(0);
+        table.nextHand(0);
+        Deck deck = Deck.seeded(42);
+        deck.shuffle();
+        for (int i = 0; i < 3; i++) {
+            table.getCards()[i] = deck.deal();
+        }
+        better = table.getPlayers()[3];
+        deltas.update(table, mapper);
+    }
+    
+    /* one player's bet and who is next to bet change each time */
+    private void bet() {
+        raised = !raised;
+        better.setBet(0, raised ? 20 : 10);
+        table.setNextToBet(raised ? 4 : 3);
+    }
+    
+    @Benchmark
+    public JsonNode delta() {
+        bet();
+        return deltas.update(table, mapper);
+    }
+    
+    @Benchmark
+    public JsonNode wholeTable() {
+        bet();
+        return mapper.valueToTree(table);
+    }
+}
@@ -0,0 +1,235 @@
+package uk.co.risk.assessment.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import uk.co.risk.assessment.message.Message;
+import uk.co.risk.assessment.message.MessageType;
+import uk.co.risk.assessment.message.NewPlayerMessage;
+
+/**
+ * A player on its own connection, playing the way a client would: it joins, sits, deals when it's
+ * the dealer, buys in when it runs out and bets to its strategy when it's next. It has only one
+ * command outstanding at a time and acts on the table update that answers it, so the rate at which
+ * hands are played is set by the server.
+ *
+ */
+public class Bot extends WebSocketClient {
+    private static final Logger LOG = LoggerFactory.getLogger(Bot.class);
+    
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String PASSWORD = "loadtest";
+    
+    private final String name;
+    private final String tableId;
+    private final BotStrategy strategy;
+    private final LoadStats stats;
+    private final ScheduledExecutorService scheduler;
+    private final long thinkMillis;
+    private final Random random;
+    
+    // the last table we were sent, acted on again when nudged
+    private JsonNode table;
+    private boolean joined;
+    private boolean running = true;
+    // when the command we are waiting to hear about went, 0 if none
+    private long sentNanos;
+    // our last command was refused, so don't bet that way again
+    private boolean refused;
+    
+    public Bot(URI uri, String name, String tableId, BotStrategy strategy, LoadStats stats,
+            ScheduledExecutorService scheduler, long thinkMillis) {
+        super(uri);
+        this.name = name;
+        this.tableId = tableId;
+        this.strategy = strategy;
+        this.stats = stats;
+        this.scheduler = scheduler;
+        this.thinkMillis = thinkMillis;
+        random = new Random(name.hashCode());
+        setTcpNoDelay(true);
+    }
+    
+    @Override
+    public void onOpen(ServerHandshake handshake) {
+        Message join = new Message(MessageType.PLAYER_JOINED);
+        NewPlayerMessage newPlayer = new NewPlayerMessage();
+        newPlayer.setName(name);
+        newPlayer.setPassword(PASSWORD);
+        join.setNewPlayer(newPlayer);
+        join.setTableId(tableId);
+        sendMessage(join);
+    }
+    
+    @Override
+    public synchronized void onMessage(String message) {
+        JsonNode msg;
+        try {
+            msg = MAPPER.readTree(message);
+        } catch (IOException e) {
+            LOG.error("{} couldn't read {}", name, message, e);
+            stats.error();
+            return;
+        }
+        switch (msg.path("type").asText()) {
+            case "PLAYER_JOINED_ACK":
+                joined = true;
+                command("sit");
+                break;
+            case "TEXT_MESSAGE":
+                JsonNode outcome = msg.get("outcome");
+                boolean answered = false;
+                if (sentNanos != 0 && outcome != null && name.equals(msg.path("playerName").asText())) {
+                    boolean accepted = outcome.path("accepted").asBoolean();
+                    stats.answered(sentNanos, accepted);
+                    sentNanos = 0;
+                    answered = true;
+                    refused = !accepted;
+                    if (accepted && "DEAL".equals(outcome.path("action").asText())) {
+                        stats.handDealt();
+                    }
+                }
+                if (msg.hasNonNull("table")) {
+                    table = msg.get("table");
+                    act(!(answered && refused));
+                }
+                break;
+            case "PLAYER_BADPASSWORD":
+            case "PLAYER_OVERRIDDEN":
+                LOG.error("{} was turned away: {}", name, msg.path("type").asText());
+                stats.error();
+                running = false;
+                close();
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /*
+     * try again from the last table we saw. For when an update that would have got us going never
+     * came, like there not being enough players to deal yet, or it went astray.
+     */
+    public synchronized void nudge(long timeoutNanos) {
+        if (sentNanos != 0) {
+            if (System.nanoTime() - sentNanos < timeoutNanos) {
+                return;
+            }
+            stats.timedOut();
+            sentNanos = 0;
+        }
+        act(true);
+    }
+    
+    public synchronized void stop() {
+        running = false;
+    }
+    
+    /* our move, if we have one. A refused deal or buy in is only tried again when it's worth it */
+    private void act(boolean retry) {
+        if (!running || !joined || sentNanos != 0 || table == null) {
+            return;
+        }
+        JsonNode players = table.path("players");
+        int seat = -1;
+        for (int i = 0; i < players.size(); i++) {
+            if (name.equals(players.get(i).path("name").asText())) {
+                seat = i;
+                break;
+            }
+        }
+        if (seat == -1) {
+            // no seat yet, or there wasn't one; only worth asking again now and then
+            if (retry && !refused) {
+                command("sit");
+            }
+            return;
+        }
+        JsonNode me = players.get(seat);
+        int chips = me.path("chips").asInt();
+        int bigBlind = table.path("bigBlind").asInt();
+        if ("PREDEAL".equals(table.path("state").asText())) {
+            if (!retry) {
+                return;
+            }
+            if (chips < bigBlind && chips <= table.path("minimumBuyin").asInt()) {
+                command("buyin");
+            } else if (table.path("dealer").asInt() == seat) {
+                command("deal");
+            }
+        } else if (table.path("nextToBet").asInt() == seat) {
+            int totalBet = 0;
+            for (JsonNode bet : me.path("bets")) {
+                totalBet += bet.asInt();
+            }
+            BotStrategy.Turn turn = new BotStrategy.Turn(chips, totalBet, table.path("currentBet").asInt(),
+                    table.path("minimumRaise").asInt(), table.path("smallBlind").asInt());
+            // a refused raise gets a call instead, or we would keep asking
+            command(refused ? turn.checkOrCall() : strategy.decide(turn, random));
+        }
+    }
+    
+    private void command(String command) {
+        Message msg = new Message(MessageType.TEXT_MESSAGE);
+        msg.setData(command);
+        sentNanos = System.nanoTime();
+        if (thinkMillis <= 0) {
+            sendMessage(msg);
+        } else {
+            // the clock starts when the command actually goes
+            scheduler.schedule(() -> {
+                synchronized (this) {
+                    sentNanos = System.nanoTime();
+                    sendMessage(msg);
+                }
+            }, thinkMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void sendMessage(Message msg) {
+        if (!isOpen()) {
+            return;
+        }
+        try {
+            send(MAPPER.writeValueAsString(msg));
+        } catch (IOException e) {
+            LOG.error("{} couldn't send {}", name, msg.getType(), e);
+            stats.error();
+        }
+    }
+    
+    @Override
+    public void onMessage(java.nio.ByteBuffer bytes) {
+        // bots don't ask for the binary protocol
+    }
+    
+    @Override
+    public synchronized void onClose(int code, String reason, boolean remote) {
+        if (running) {
+            LOG.warn("{} disconnected: {} {}", name, code, reason);
+            stats.error();
+            running = false;
+        }
+    }
+    
+    @Override
+    public void onError(Exception ex) {
+        LOG.error("{} connection error", name, ex);
+        stats.error();
+    }
+    
+    public String getName() {
+        return name;
+    }
+}
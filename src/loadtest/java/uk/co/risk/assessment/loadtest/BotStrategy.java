@@ -0,0 +1,84 @@
+package uk.co.risk.assessment.loadtest;
+
+import java.util.Random;
+
+/**
+ * How a bot bets when it's its turn. Each returns the command to type, as a player would.
+ *
+ */
+public enum BotStrategy {
+    /* never raises, so hands go to showdown and every street gets played */
+    PASSIVE {
+        @Override
+        String decide(Turn turn, Random random) {
+            return turn.checkOrCall();
+        }
+    },
+    /* raises whenever it can afford to, which means side pots and all-ins */
+    AGGRESSIVE {
+        @Override
+        String decide(Turn turn, Random random) {
+            return turn.canRaise() ? turn.raise() : turn.checkOrCall();
+        }
+    },
+    /* a bit of everything, folding some hands before they are finished */
+    RANDOM {
+        @Override
+        String decide(Turn turn, Random random) {
+            int roll = random.nextInt(100);
+            if (roll < 10 && !turn.canCheck()) {
+                return "fold";
+            }
+            if (roll < 30 && turn.canRaise()) {
+                return turn.raise();
+            }
+            return turn.checkOrCall();
+        }
+    };
+    
+    abstract String decide(Turn turn, Random random);
+    
+    /**
+     * The bot's position when it's next to bet, from the table it was last sent.
+     *
+     */
+    static class Turn {
+        private final int chips;
+        private final int totalBet;
+        private final int currentBet;
+        private final int minimumRaise;
+        private final int smallBlind;
+        
+        Turn(int chips, int totalBet, int currentBet, int minimumRaise, int smallBlind) {
+            this.chips = chips;
+            this.totalBet = totalBet;
+            this.currentBet = currentBet;
+            this.minimumRaise = minimumRaise;
+            this.smallBlind = smallBlind;
+        }
+        
+        boolean canCheck() {
+            return totalBet == currentBet;
+        }
+        
+        String checkOrCall() {
+            return canCheck() ? "check" : "call";
+        }
+        
+        /* the smallest raise the game takes, which has to be a multiple of the small blind */
+        int raiseAmount() {
+            if (smallBlind <= 0) {
+                return minimumRaise;
+            }
+            return (minimumRaise + smallBlind - 1) / smallBlind * smallBlind;
+        }
+        
+        boolean canRaise() {
+            return raiseAmount() > currentBet && raiseAmount() <= chips - totalBet;
+        }
+        
+        String raise() {
+            return "raise " + raiseAmount();
+        }
+    }
+}
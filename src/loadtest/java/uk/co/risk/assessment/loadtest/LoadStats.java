@@ -0,0 +1,110 @@
+package uk.co.risk.assessment.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * What the bots have seen, shared between all of them. Latency is from a bot sending a command to
+ * the table update for it arriving back, in microseconds. Everything is counted per interval, so
+ * the warm up can be thrown away and progress reported as we go.
+ *
+ */
+public class LoadStats {
+    // anything slower than a minute is as good as lost
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+    
+    private final Recorder latency = new Recorder(HIGHEST_MICROS, 3);
+    private final LongAdder actions = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder hands = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    
+    private Histogram interval;
+    
+    void answered(long sentNanos, boolean accepted) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentNanos);
+        latency.recordValue(Math.min(micros, HIGHEST_MICROS));
+        actions.increment();
+        if (!accepted) {
+            rejected.increment();
+        }
+    }
+    
+    void timedOut() {
+        timedOut.increment();
+    }
+    
+    void handDealt() {
+        hands.increment();
+    }
+    
+    void error() {
+        errors.increment();
+    }
+    
+    /* everything since the last interval, starting the next */
+    public Interval next() {
+        interval = latency.getIntervalHistogram(interval);
+        return new Interval(interval.copy(), actions.sumThenReset(), rejected.sumThenReset(),
+                timedOut.sumThenReset(), hands.sumThenReset(), errors.sumThenReset());
+    }
+    
+    /**
+     * Counts for one stretch of the run, which can be added together for the whole of it.
+     *
+     */
+    public static class Interval {
+        private final Histogram latency;
+        private long actions;
+        private long rejected;
+        private long timedOut;
+        private long hands;
+        private long errors;
+        
+        Interval(Histogram latency, long actions, long rejected, long timedOut, long hands, long errors) {
+            this.latency = latency;
+            this.actions = actions;
+            this.rejected = rejected;
+            this.timedOut = timedOut;
+            this.hands = hands;
+            this.errors = errors;
+        }
+        
+        public void add(Interval other) {
+            latency.add(other.latency);
+            actions += other.actions;
+            rejected += other.rejected;
+            timedOut += other.timedOut;
+            hands += other.hands;
+            errors += other.errors;
+        }
+        
+        public Histogram getLatency() {
+            return latency;
+        }
+        
+        public long getActions() {
+            return actions;
+        }
+        
+        public long getRejected() {
+            return rejected;
+        }
+        
+        public long getTimedOut() {
+            return timedOut;
+        }
+        
+        public long getHands() {
+            return hands;
+        }
+        
+        public long getErrors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package uk.co.risk.assessment.loadtest;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.undertow.Undertow;
+import io.undertow.server.handlers.ResponseCodeHandler;
+
+import uk.co.risk.assessment.PokerServer;
+import uk.co.risk.assessment.dao.PlayerDAO;
+import uk.co.risk.assessment.server.UndertowWebSockets;
+
+/**
+ * Plays bots against a server over real WebSocket connections and reports how many commands a
+ * second it kept up and how long each took to come back as a table update. Without a url it starts
+ * a PokerServer of its own on a free port, with cheap password hashing so logging thousands of
+ * bots in doesn't hold things up, its WebSockets on Java-WebSocket or Undertow as --server says:
+ *
+ * LoadTest [--tables=50] [--seats=6] [--strategy=mixed] [--think=0] [--warmup=10] [--duration=60]
+ *          [--server=java-websocket|undertow] [--url=ws://host:port] [--histogram=file]
+ *
+ * The strategy is passive, aggressive, random or mixed, which has a table of each. Think is the
+ * milliseconds a bot waits before each command, with 0 every bot keeps one command in flight.
+ * The histogram file gets the full latency distribution, to compare one release with another.
+ *
+ */
+public class LoadTest {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTest.class);
+    
+    // how often bots are given a chance to start again if nothing has come to them
+    private static final long NUDGE_MILLIS = 1000;
+    // a command not answered by then counts as lost
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int REPORT_SECONDS = 5;
+    // login hashing for the server we start, the real thing would make the load test a password test
+    private static final int PASSWORD_ITERATIONS = 1000;
+    
+    private final Map<String, String> options;
+    private final LoadStats stats = new LoadStats();
+    private final List<Bot> bots = new ArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "load-test");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals == -1) {
+                System.err.println("Usage: LoadTest [--tables=50] [--seats=6] [--strategy=passive|aggressive|random|mixed]"
+                        + " [--think=0] [--warmup=10] [--duration=60] [--server=java-websocket|undertow]"
+                        + " [--url=ws://host:port] [--histogram=file]");
+                System.exit(2);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+    
+    public void run() throws Exception {
+        int tables = intOption("tables", 50);
+        int seats = intOption("seats", 6);
+        long think = intOption("think", 0);
+        int warmup = intOption("warmup", 10);
+        int duration = intOption("duration", 60);
+        String strategy = options.getOrDefault("strategy", "mixed").toUpperCase();
+        
+        String serverType = options.getOrDefault("server", "java-websocket");
+        
+        PokerServer server = null;
+        Undertow undertow = null;
+        String url = options.get("url");
+        if (url == null) {
+            server = new PokerServer(0, new PlayerDAO(null, PASSWORD_ITERATIONS, Runtime.getRuntime().availableProcessors()));
+            if (serverType.equalsIgnoreCase("undertow")) {
+                undertow = Undertow.builder().addHttpListener(0, "localhost")
+                        .setHandler(UndertowWebSockets.handler(server, ResponseCodeHandler.HANDLE_404)).build();
+                undertow.start();
+                server.onStart();
+                url = "ws://localhost:" + ((InetSocketAddress) undertow.getListenerInfo().get(0).getAddress()).getPort();
+            } else {
+                server.start();
+                url = "ws://localhost:" + awaitPort(server);
+            }
+        }
+        LOG.info("Connecting {} bots at {} tables to {}", tables * seats, tables, url);
+        URI uri = new URI(url);
+        BotStrategy[] strategies = BotStrategy.values();
+        for (int t = 0; t < tables; t++) {
+            BotStrategy tableStrategy = strategy.equals("MIXED") ? strategies[t % strategies.length]
+                    : BotStrategy.valueOf(strategy);
+            for (int s = 0; s < seats; s++) {
+                Bot bot = new Bot(uri, "bot-" + t + "-" + s, "load-" + t, tableStrategy, stats, scheduler, think);
+                bots.add(bot);
+                if (!bot.connectBlocking(10, TimeUnit.SECONDS)) {
+                    LOG.error("{} couldn't connect", bot.getName());
+                }
+            }
+        }
+        scheduler.scheduleWithFixedDelay(this::nudge, NUDGE_MILLIS, NUDGE_MILLIS, TimeUnit.MILLISECONDS);
+        
+        LOG.info("Warming up for {}s", warmup);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+        stats.next();
+        LoadStats.Interval total = null;
+        for (int elapsed = 0; elapsed < duration; elapsed += REPORT_SECONDS) {
+            int seconds = Math.min(REPORT_SECONDS, duration - elapsed);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            LoadStats.Interval interval = stats.next();
+            report(System.out, "  " + (elapsed + seconds) + "s", interval, seconds);
+            if (total == null) {
+                total = interval;
+            } else {
+                total.add(interval);
+            }
+        }
+        
+        for (Bot bot : bots) {
+            bot.stop();
+        }
+        System.out.println();
+        System.out.println(tables + " tables of " + seats + " bots, " + strategy.toLowerCase() + " strategy, think "
+                + think + "ms, " + duration + "s after " + warmup + "s warm up, "
+                + (server == null ? url : serverType + " server"));
+        report(System.out, "total", total, duration);
+        String histogram = options.get("histogram");
+        if (histogram != null && total != null) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(histogram))) {
+                total.getLatency().outputPercentileDistribution(out, 1000.0);
+            }
+            System.out.println("Latency distribution (ms) written to " + histogram);
+        }
+        
+        for (Bot bot : bots) {
+            bot.close();
+        }
+        if (undertow != null) {
+            undertow.stop();
+        } else if (server != null) {
+            server.stop(1000);
+        }
+    }
+    
+    private static void report(PrintStream out, String label, LoadStats.Interval interval, int seconds) {
+        if (interval == null) {
+            return;
+        }
+        Histogram latency = interval.getLatency();
+        out.println(String.format("%6s %9.1f actions/s %7.1f hands/s   latency ms p50 %7.3f p99 %7.3f p999 %7.3f max %7.3f"
+                + "   rejected %d, timed out %d, errors %d",
+                label, interval.getActions() / (double) seconds, interval.getHands() / (double) seconds,
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                latency.getValueAtPercentile(99.9) / 1000.0, latency.getMaxValue() / 1000.0,
+                interval.getRejected(), interval.getTimedOut(), interval.getErrors()));
+    }
+    
+    private void nudge() {
+        for (Bot bot : bots) {
+            bot.nudge(TIMEOUT_NANOS);
+        }
+    }
+    
+    /* the port only exists once the server has bound it */
+    private static int awaitPort(PokerServer server) throws InterruptedException {
+        for (int i = 0; i < 100 && server.getPort() == 0; i++) {
+            Thread.sleep(100);
+        }
+        if (server.getPort() == 0) {
+            throw new IllegalStateException("Server didn't start");
+        }
+        return server.getPort();
+    }
+    
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -2,9 +2,7 @@ package uk.co.risk.assessment;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.ByteBuffer;
 import java.nio.file.Paths;
 
 import org.java_websocket.WebSocket;
@@ -13,109 +11,271 @@ import org.java_websocket.server.WebSocketServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.undertow.Undertow;
-import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.HttpHandler;
 
-import static io.undertow.Handlers.resource;
+import static io.undertow.Handlers.path;
 
 import uk.co.risk.assessment.dao.PlayerDAO;
+import uk.co.risk.assessment.equity.RunoutCalculator;
+import uk.co.risk.assessment.history.HandJournal;
+import uk.co.risk.assessment.history.MappedHandJournal;
+import uk.co.risk.assessment.message.BinaryCodec;
 import uk.co.risk.assessment.message.Message;
 import uk.co.risk.assessment.message.MessageType;
+import uk.co.risk.assessment.message.TableJsonModule;
+import uk.co.risk.assessment.metrics.CounterFamily;
+import uk.co.risk.assessment.metrics.GameMetrics;
+import uk.co.risk.assessment.metrics.MetricsHandler;
+import uk.co.risk.assessment.metrics.MetricsRegistry;
+import uk.co.risk.assessment.metrics.Timer;
+import uk.co.risk.assessment.metrics.TimerFamily;
+import uk.co.risk.assessment.model.Action;
+import uk.co.risk.assessment.model.ActionType;
+import uk.co.risk.assessment.model.CommandResult;
 import uk.co.risk.assessment.model.Game;
 import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.server.BroadcastEncoder;
+import uk.co.risk.assessment.server.Connection;
+import uk.co.risk.assessment.server.ConnectionHandler;
+import uk.co.risk.assessment.server.DeltaTracker;
+import uk.co.risk.assessment.server.HostedTable;
+import uk.co.risk.assessment.server.JavaWebSocketConnection;
+import uk.co.risk.assessment.server.OutboundLimits;
+import uk.co.risk.assessment.server.OutboundQueues;
+import uk.co.risk.assessment.server.Outbox;
+import uk.co.risk.assessment.server.Session;
+import uk.co.risk.assessment.server.SessionRegistry;
+import uk.co.risk.assessment.server.TableExecution;
+import uk.co.risk.assessment.server.TableRegistry;
+import uk.co.risk.assessment.server.Tracer;
+import uk.co.risk.assessment.server.UndertowWebSockets;
+import uk.co.risk.assessment.web.StaticContent;
 
-public class PokerServer extends WebSocketServer {
+public class PokerServer extends WebSocketServer implements ConnectionHandler {
     
     private static final Logger LOG = LoggerFactory.getLogger(PokerServer.class);
     
-    private HashMap<WebSocket, String> players;
-    PlayerDAO playerDAO = new PlayerDAO();
+    // static content and /metrics, and with WEBSOCKET_SERVER=undertow the game too
+    private static final int HTTP_PORT = 8081;
     
-    /* let's just have a single game for now */
-    Game game;
+    /* every open connection, and who is logged in on it */
+    private final SessionRegistry sessions = new SessionRegistry();
+    /* bounded sending, so a slow client can't make us buffer without limit */
+    private final OutboundQueues outbound = new OutboundQueues(OutboundLimits.fromEnvironment());
+    PlayerDAO playerDAO;
     
-    private Set<WebSocket> conns;
+    /* every hand played, null if not kept */
+    HandJournal handJournal;
     
-    ObjectMapper mapper = new ObjectMapper();
+    /* each table has its own game, its commands run one at a time on its own executor */
+    TableRegistry tables;
     
-    private PokerServer(int port) {
+    ObjectMapper mapper = new ObjectMapper().registerModule(new TableJsonModule());
+    BroadcastEncoder broadcastEncoder = new BroadcastEncoder(mapper);
+    BinaryCodec binaryCodec = new BinaryCodec(mapper);
+    
+    /* everything we measure, served on /metrics */
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final CounterFamily<MessageType> messagesIn = metrics.counters("poker_messages_received_total",
+            "Messages received, by type", "type", MessageType.class);
+    private final CounterFamily<MessageType> messagesOut = metrics.counters("poker_messages_sent_total",
+            "Messages sent, by type, a table update counting once for each player it goes to", "type", MessageType.class);
+    private final TimerFamily<ActionType> commandTime = metrics.timers("poker_command_seconds",
+            "Time for a game to handle a command, by command", "command", ActionType.class);
+    private final Timer broadcastTime = metrics.timer("poker_broadcast_seconds",
+            "Time to encode a table update and send it to everyone at the table");
+    private final GameMetrics gameMetrics = new GameMetrics(metrics);
+    
+    public PokerServer(int port) throws IOException {
+        this(port, PlayerDAO.fromEnvironment());
+    }
+    
+    /* port 0 picks a free port, getPort() says which once started */
+    public PokerServer(int port, PlayerDAO playerDAO) throws IOException {
         super(new InetSocketAddress(port));
-        conns = new HashSet<>();
-        players = new HashMap<>();
-        game = new Game(playerDAO);
+        this.playerDAO = playerDAO;
+        handJournal = MappedHandJournal.fromEnvironment();
+        boolean allInRunouts = Boolean.parseBoolean(System.getenv("ALLIN_RUNOUTS"));
+        TableExecution execution = TableExecution.fromEnvironment();
+        LOG.info("Running tables with {} execution", execution.getName());
+        tables = new TableRegistry(tableId -> {
+            Game game = new Game(playerDAO);
+            game.setMetrics(gameMetrics);
+            if (allInRunouts) {
+                game.setRunoutCalculator(new RunoutCalculator());
+                // worked out off the table's thread, so it comes back as an update of its own
+                game.setRunoutReporter(report -> {
+                    HostedTable table = tables.get(tableId);
+                    if (table != null && table.getGame() == game) {
+                        table.submit(() -> updateGameState(table, null, report, null, table.getTrace().begin()));
+                    }
+                });
+            }
+            if (handJournal != null) {
+                game.setHandJournal(handJournal, tableId);
+            }
+            return game;
+        }, Tracer.fromEnvironment(), execution);
+        registerGauges();
+        // chips and hands from the last hands played may not have been written yet
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closeStores, "store-shutdown"));
+    }
+    
+    /* metrics read from what we already keep track of */
+    private void registerGauges() {
+        metrics.gauge("poker_connections_open", "Open WebSocket connections", sessions::size);
+        metrics.gauge("poker_tables_active", "Tables with anyone at them", () -> tables.getTables().size());
+        // read off the table threads, but a moment out is near enough for a gauge
+        metrics.gauge("poker_seats_taken", "Players sitting at tables", () -> {
+            long seats = 0;
+            for (HostedTable table : tables.getTables()) {
+                seats += table.getGame().getTable().countPlayers();
+            }
+            return seats;
+        });
+        metrics.counter("poker_sent_frames_total", "WebSocket frames sent", outbound::getSentFrames);
+        metrics.counter("poker_sent_bytes_total", "Bytes of message sent", outbound::getSentBytes);
+        metrics.gauge("poker_outbound_queued_frames", "Frames waiting to be written, across all connections",
+                outbound::getQueuedFrames);
+        metrics.gauge("poker_outbound_behind", "Connections with updates held back", outbound::getBehindCount);
+        metrics.counter("poker_outbound_coalesced_total", "Held back updates replaced by a newer one",
+                outbound::getCoalesced);
+        metrics.counter("poker_slow_disconnects_total", "Connections dropped for not keeping up",
+                outbound::getSlowDisconnects);
+        if (handJournal instanceof MappedHandJournal) {
+            MappedHandJournal journal = (MappedHandJournal) handJournal;
+            metrics.counter("poker_hand_journal_dropped_total", "Hands not recorded because the journal fell behind",
+                    journal::getDropped);
+        }
+    }
+    
+    public MetricsRegistry getMetrics() {
+        return metrics;
     }
     
     @Override
     public void onOpen(WebSocket webSocket, ClientHandshake clientHandshake) {
-        conns.add(webSocket);
+        String resource = clientHandshake.getResourceDescriptor();
+        int query = resource == null ? -1 : resource.indexOf('?');
+        opened(new JavaWebSocketConnection(webSocket),
+                ConnectionHandler.wantsBinary(query == -1 ? null : resource.substring(query + 1)));
+    }
+    
+    @Override
+    public void opened(Connection connection, boolean binary) {
+        sessions.open(connection, outbound.open(connection), binary);
         
-        LOG.info("Connection established from: {}, {}",
-                webSocket.getRemoteSocketAddress().getHostString(),
-                webSocket.getRemoteSocketAddress().getAddress().getHostAddress());
+        LOG.info("Connection established from: {}", connection.getRemoteAddress());
     }
     
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        conns.remove(conn);
+        closed(JavaWebSocketConnection.of(conn));
+    }
+    
+    @Override
+    public void closed(Connection connection) {
         // When connection is closed, remove the user.
-        try {
-            removePlayer(conn);
-        } catch (JsonProcessingException e) {
-            LOG.warn("Error removing user: ", e);
+        Session session = sessions.close(connection);
+        if (session != null) {
+            outbound.close(session.getOutbox());
+            removePlayer(session);
         }
         
-        LOG.info("Connection closed to: {} ", conn.getRemoteSocketAddress() == null ? "no connection" : conn.getRemoteSocketAddress().getHostString()
-              /*  conn.getRemoteSocketAddress().getAddress().getHostAddress()*/);
+        LOG.info("Connection closed to: {} ", connection == null || connection.getRemoteAddress() == null
+                ? "no connection" : connection.getRemoteAddress());
     }
     
     @Override
     public void onMessage(WebSocket conn, String message) {
-        LOG.info("In onMessage, got: {}", message);
+        received(JavaWebSocketConnection.of(conn), message);
+    }
+    
+    @Override
+    public void received(Connection connection, String message) {
+        Session session = sessions.get(connection);
+        if (session == null) {
+            LOG.warn("Message on a connection that has already closed: {}", message);
+            return;
+        }
         try {
-            Message msg = mapper.readValue(message, Message.class);
-            switch (msg.getType()) {
-                case PLAYER_JOINED:
-                    LOG.info("New player login: {}", msg.getNewPlayer().getName());
-                    Player player = playerDAO.newPlayer(msg.getNewPlayer());
-                    if (player == null) {
-                        LOG.warn("Failed to join new player, bad password?");
-                        Message m = new Message(MessageType.PLAYER_BADPASSWORD);
-                        sendMessage(m, conn);
-                    } else {
-                        /* check for existing players with the same name and disconnect them */
-                        for (WebSocket otherCon : conns) {
-                            String playerName = players.get(otherCon);
-                            if (playerName != null && playerName.equals(player.getName())) {
-                                Message m = new Message(MessageType.PLAYER_OVERRIDDEN);
-                                sendMessage(m, otherCon);
-                                otherCon.close();
-                            }
-                        }
-                        addPlayer(player.getName(), conn);
-                    }
-                    break;
-                case PLAYER_LEFT:
-                    LOG.info("Player left {}", players.get(conn));
-                    removePlayer(conn);
-                    break;
-                case TEXT_MESSAGE:
-                    LOG.info("Command message: {} from {}", msg, players.get(conn));
-                    msg.setData(game.handleCommand(players.get(conn), msg.getData()));
-                    updateGameState(players.get(conn), msg.getData());
-                    break;
-                default:
-                    LOG.warn("Invalid message received: {}", message);
-            }
-            
+            handleMessage(session, mapper.readValue(message, Message.class), message);
         } catch (IOException e) {
             LOG.error("Wrong message format.", e);
             // return error message to user
         }
     }
     
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        received(JavaWebSocketConnection.of(conn), message);
+    }
+    
+    @Override
+    public void received(Connection connection, ByteBuffer message) {
+        Session session = sessions.get(connection);
+        if (session == null) {
+            LOG.warn("Binary message on a connection that has already closed");
+            return;
+        }
+        try {
+            Message msg = binaryCodec.decode(message);
+            handleMessage(session, msg, msg.getType() + " (binary)");
+        } catch (IOException e) {
+            LOG.error("Wrong binary message format.", e);
+        }
+    }
+    
+    /* the message as it arrived is only for logging */
+    private void handleMessage(Session session, Message msg, String message) throws IOException {
+        messagesIn.increment(msg.getType());
+        switch (msg.getType()) {
+            case PLAYER_JOINED:
+                LOG.info("New player login: {}", msg.getNewPlayer().getName());
+                // checking the password is slow, so it's done on the login pool and we carry on from there
+                playerDAO.login(msg.getNewPlayer()).whenComplete((player, error) -> loggedIn(session, msg, player, error));
+                break;
+            case PLAYER_LEFT:
+                LOG.info("Player left {}", session.getPlayerName());
+                removePlayer(session);
+                break;
+            case TEXT_MESSAGE:
+                HostedTable table = session.getTable();
+                String playerName = session.getPlayerName();
+                if (table == null || playerName == null) {
+                    LOG.warn("Command from connection that hasn't joined a table: {}", message);
+                    break;
+                } else if (msg.getAction() == null && msg.getData() == null) {
+                    LOG.warn("Command with nothing in it: {}", message);
+                    break;
+                }
+                // typed commands are parsed here rather than holding up the table
+                Action action = msg.getAction() != null ? msg.getAction() : new Action().parse(msg.getData());
+                long traceId = table.getTrace().begin();
+                table.getTrace().event(traceId, "command", playerName, action);
+                table.submit(() -> {
+                    long start = System.nanoTime();
+                    CommandResult result = table.getGame().handleAction(playerName, action);
+                    commandTime.get(action.getType() == null ? ActionType.UNKNOWN : action.getType()).since(start);
+                    table.getTrace().event(traceId, "result", playerName, result.getText());
+                    updateGameState(table, playerName, result.getText(), result, traceId);
+                });
+                break;
+            case SNAPSHOT_REQUEST:
+                HostedTable snapshotTable = session.getTable();
+                if (snapshotTable != null) {
+                    snapshotTable.getDeltas().requestSnapshot(session);
+                    snapshotTable.submit(() -> sendSnapshot(snapshotTable, session));
+                }
+                break;
+            default:
+                LOG.warn("Invalid message received: {}", message);
+        }
+    }
+    
     @Override
     public void onError(WebSocket conn, Exception ex) {
         
@@ -123,68 +283,222 @@ public class PokerServer extends WebSocketServer {
             LOG.error("Error on connection {}",
                     (conn != null && conn.getRemoteSocketAddress() != null && conn.getRemoteSocketAddress().getAddress() != null) ? 
                             conn.getRemoteSocketAddress().getAddress().getHostAddress() : "no address", ex);
-            conns.remove(conn);
+            // the session goes when onClose follows
         } else {
             LOG.error("Error with null connection", ex);
             System.exit(-1);
         }
     }
     
-    private void updateGameState(String playerName, String message) {
+    /*
+     * send the table state to everyone at the table: the whole table, or for delta clients just what
+     * changed unless they need a snapshot, in binary for binary clients. Must be run on the table's
+     * executor.
+     */
+    private void updateGameState(HostedTable table, String playerName, String message, CommandResult outcome,
+            long traceId) {
+        long start = System.nanoTime();
+        Game game = table.getGame();
+        DeltaTracker deltas = table.getDeltas();
         Message newMessage = new Message(MessageType.TEXT_MESSAGE);
         newMessage.setData(message);
+        newMessage.setOutcome(outcome);
         newMessage.setTable(game.getTable());
         newMessage.setPlayerName(playerName);
-        for (WebSocket con : conns) {
-            String thisPlayer = players.get(con);
-            if (thisPlayer != null) {
-                newMessage.setCards(game.getCardsFor(thisPlayer));
-                String messageJson;
-                try {
-                    messageJson = mapper.writeValueAsString(newMessage);
-                    LOG.info("Sending to player {} message {}", thisPlayer, messageJson);
-                    con.send(messageJson);
-                } catch (JsonProcessingException e) {
-                    LOG.error("Cannot convert message to json.", e);
+        String shared = null;
+        String sharedSnapshot = null;
+        String sharedDelta = null;
+        byte[] sharedBinary = null;
+        try {
+            if (deltas.isActive()) {
+                Message deltaMessage = new Message(MessageType.TABLE_DELTA);
+                deltaMessage.setData(message);
+                deltaMessage.setOutcome(outcome);
+                deltaMessage.setPlayerName(playerName);
+                deltaMessage.setDelta(deltas.update(game.getTable(), mapper));
+                deltaMessage.setSeq(deltas.getSeq());
+                sharedDelta = broadcastEncoder.shared(deltaMessage);
+            } else {
+                deltas.reset();
+            }
+            for (Session session : table.getSessions()) {
+                String thisPlayer = session.getPlayerName();
+                if (thisPlayer == null || !session.getConnection().isOpen()) {
+                    continue;
                 }
+                Outbox outbox = session.getOutbox();
+                if (session.isBinary()) {
+                    if (sharedBinary == null) {
+                        sharedBinary = binaryCodec.shared(newMessage);
+                    }
+                    byte[] messageBytes = binaryCodec.withCards(sharedBinary, game.getCardsFor(thisPlayer));
+                    table.getTrace().event(traceId, "send", thisPlayer, messageBytes.length + " bytes binary");
+                    outbox.sendUpdate(messageBytes);
+                    messagesOut.increment(MessageType.TEXT_MESSAGE);
+                    continue;
+                }
+                boolean takesDeltas = deltas.takesDeltas(session);
+                if (takesDeltas && !outbox.canSend()) {
+                    /* can't skip a delta, so have it start again from a snapshot once it catches up */
+                    deltas.requestSnapshot(session);
+                    outbox.resync(() -> table.submit(() -> sendSnapshot(table, session)));
+                    continue;
+                }
+                String messageShared;
+                if (!takesDeltas) {
+                    if (shared == null) {
+                        shared = broadcastEncoder.shared(newMessage);
+                    }
+                    messageShared = shared;
+                } else if (deltas.takeSnapshotRequest(session)) {
+                    if (sharedSnapshot == null) {
+                        newMessage.setSeq(deltas.getSeq());
+                        sharedSnapshot = broadcastEncoder.shared(newMessage);
+                        newMessage.setSeq(null);
+                    }
+                    messageShared = sharedSnapshot;
+                } else {
+                    messageShared = sharedDelta;
+                }
+                String messageJson = broadcastEncoder.withCards(messageShared, game.getCardsFor(thisPlayer));
+                table.getTrace().event(traceId, "send", thisPlayer, messageJson);
+                outbox.sendUpdate(messageJson);
+                messagesOut.increment(messageShared == sharedDelta ? MessageType.TABLE_DELTA : MessageType.TEXT_MESSAGE);
             }
+        } catch (IOException e) {
+            LOG.error("Cannot encode message.", e);
+        }
+        broadcastTime.since(start);
+    }
+    
+    /* whole table for a delta client that has lost track. Must be run on the table's executor. */
+    private void sendSnapshot(HostedTable table, Session session) {
+        String thisPlayer = session.getPlayerName();
+        if (thisPlayer == null || !table.getDeltas().takeSnapshotRequest(session)) {
+            return;
         }
+        Message snapshot = new Message(MessageType.TEXT_MESSAGE);
+        snapshot.setTable(table.getGame().getTable());
+        snapshot.setSeq(table.getDeltas().getSeq());
+        snapshot.setCards(table.getGame().getCardsFor(thisPlayer));
+        sendMessage(snapshot, session);
     }
     
-    private void sendMessage(Message msg, WebSocket con) {
+    private void sendMessage(Message msg, Session session) {
+        messagesOut.increment(msg.getType());
         try {
+            if (session.isBinary()) {
+                LOG.debug("Sending binary message to user: {}, {}", session, msg.getType());
+                session.getOutbox().send(binaryCodec.encode(msg));
+                return;
+            }
             String messageJson = mapper.writeValueAsString(msg);
-            LOG.info("Sending message to user: {}, {}", players.get(con), messageJson);
-            con.send(messageJson);
-        } catch (JsonProcessingException e) {
-            LOG.error("Cannot convert message to json.");
+            LOG.debug("Sending message to user: {}, {}", session, messageJson);
+            session.getOutbox().send(messageJson);
+        } catch (IOException e) {
+            LOG.error("Cannot encode message.");
         }
     }
     
-    private void addPlayer(String playerName, WebSocket conn) throws JsonProcessingException {
-        players.put(conn, playerName);
-        acknowledgePlayerJoined(playerDAO.getPlayer(playerName), conn);
-        updateGameState(playerName, "Joined game");
+    private void closeStores() {
+        playerDAO.close();
+        if (handJournal != null) {
+            handJournal.close();
+        }
     }
     
-    private void removePlayer(WebSocket conn) throws JsonProcessingException {
-        String playerName = players.get(conn);
-        Player p = playerDAO.getPlayer(playerName);
-        String ret;
-        if (p != null && game.getTable().locatePlayer(playerName) != -1) {
-            ret = game.playerLeft(playerName);
-        } else {
-            ret = "Left game";
+    private void loggedIn(Session session, Message msg, Player player, Throwable error) {
+        if (error != null) {
+            LOG.warn("Couldn't check password for {}, too many logins waiting?", msg.getNewPlayer().getName(), error);
+            session.getConnection().close(Connection.TRY_AGAIN_LATER, "Server busy");
+        } else if (player == null) {
+            LOG.warn("Failed to join new player, bad password?");
+            Message m = new Message(MessageType.PLAYER_BADPASSWORD);
+            sendMessage(m, session);
+        } else if (session.getConnection().isOpen()) {
+            addPlayer(session, player.getName(), msg.getTableId(), Boolean.TRUE.equals(msg.getDeltas()));
+            // closed while we were checking, onClose may have found nothing to remove
+            if (!session.getConnection().isOpen()) {
+                removePlayer(session);
+            }
         }
-        players.remove(conn);
-        updateGameState(playerName, ret);
     }
     
-    private void acknowledgePlayerJoined(Player player, WebSocket conn)
-            throws JsonProcessingException {
+    private void addPlayer(Session session, String playerName, String tableId, boolean deltas) {
+        Session overridden = sessions.login(session, playerName);
+        HostedTable table = tables.join(tableId, session);
+        // binary tables are small enough already, binary clients always get the whole table
+        if (deltas && !session.isBinary()) {
+            table.getDeltas().addSession(session);
+        }
+        HostedTable previous = session.moveTo(table);
+        if (previous != null && previous != table) {
+            // out of the old game first, or our seat there stalls its hand
+            playerLeft(previous, playerName);
+            tables.leave(previous, session);
+        }
+        /* only now we're at the table, so evicting can't leave it empty and close it under us */
+        if (overridden != null) {
+            evict(overridden, playerName, table);
+        }
+        acknowledgePlayerJoined(playerDAO.getPlayer(playerName), tableId, session);
+        table.submit(() -> updateGameState(table, playerName, "Joined game", null, table.getTrace().begin()));
+    }
+    
+    /*
+     * disconnect an older session for a player who has just logged in again at current. It is
+     * detached before closing so that its onClose finds nothing to remove: at the same table the
+     * player stays in the game, at another they leave the old game as when switching tables.
+     */
+    private void evict(Session overridden, String playerName, HostedTable current) {
+        HostedTable table = overridden.takeTable();
+        sessions.logout(overridden);
+        if (table != null) {
+            if (table != current) {
+                playerLeft(table, playerName);
+            }
+            tables.leave(table, overridden);
+        }
+        sendMessage(new Message(MessageType.PLAYER_OVERRIDDEN), overridden);
+        overridden.getConnection().close();
+    }
+    
+    private void removePlayer(Session session) {
+        HostedTable table = session.takeTable();
+        String playerName = sessions.logout(session);
+        if (table == null) {
+            return;
+        }
+        /*
+         * no name means a newer login evicted us, possibly before we reached the table. The player
+         * stays in the game, but the session must still come off the table or it never closes.
+         */
+        if (playerName != null) {
+            playerLeft(table, playerName);
+        }
+        tables.leave(table, session);
+    }
+    
+    /* take a player out of a table's game, on the table's own thread */
+    private void playerLeft(HostedTable table, String playerName) {
+        table.submit(() -> {
+            Game game = table.getGame();
+            Player p = playerDAO.getPlayer(playerName);
+            String ret;
+            if (p != null && game.getTable().locatePlayer(playerName) != -1) {
+                ret = game.playerLeft(playerName);
+            } else {
+                ret = "Left game";
+            }
+            updateGameState(table, playerName, ret, null, table.getTrace().begin());
+        });
+    }
+    
+    private void acknowledgePlayerJoined(Player player, String tableId, Session session) {
         Message message = new Message(MessageType.PLAYER_JOINED_ACK);
         message.setPlayerName(player.getName());
-        conn.send(mapper.writeValueAsString(message));
+        message.setTableId(tableId);
+        sendMessage(message, session);
     }
     
     public static void main(String[] args) {
@@ -195,19 +509,46 @@ public class PokerServer extends WebSocketServer {
             port = 3001;
         }
         try {
-            LOG.info("Starting websocket server on port: " + port);
-            new PokerServer(port).start();
-            LOG.info("Starting undertow for static content on port 8081");
-            Undertow server = Undertow.builder().addHttpListener(8081, "0.0.0.0").setHandler(resource(new PathResourceManager(Paths.get("www"), 100))).build();
-            server.start();
+            boolean undertowSockets = undertowSockets();
+            PokerServer pokerServer = new PokerServer(port);
+            HttpHandler handler = path(StaticContent.fromEnvironment(Paths.get("www")))
+                    .addExactPath("/metrics", new MetricsHandler(pokerServer.getMetrics()));
+            Undertow.Builder undertow = Undertow.builder().addHttpListener(HTTP_PORT, "0.0.0.0");
+            if (undertowSockets) {
+                LOG.info("Starting websockets on undertow on ports {} and {}", port, HTTP_PORT);
+                handler = UndertowWebSockets.handler(pokerServer, handler);
+                if (port != HTTP_PORT) {
+                    // where clients have always connected, now on the same server as everything else
+                    undertow.addHttpListener(port, "0.0.0.0");
+                }
+                // there's no Java-WebSocket server to say it has started
+                pokerServer.onStart();
+            } else {
+                LOG.info("Starting websocket server on port: " + port);
+                pokerServer.start();
+            }
+            LOG.info("Starting undertow for static content and /metrics on port {}", HTTP_PORT);
+            undertow.setHandler(handler).build().start();
         } catch (Exception e) {
             LOG.error("Failed to start up, exiting", e);
             System.exit(-1);
         }
     }
     
+    /* WEBSOCKET_SERVER picks the server for WebSocket connections: java-websocket (the default) or undertow */
+    private static boolean undertowSockets() {
+        String server = System.getenv("WEBSOCKET_SERVER");
+        if (server == null || server.trim().isEmpty() || "java-websocket".equalsIgnoreCase(server.trim())) {
+            return false;
+        } else if ("undertow".equalsIgnoreCase(server.trim())) {
+            return true;
+        }
+        throw new IllegalArgumentException("WEBSOCKET_SERVER must be java-websocket or undertow: " + server);
+    }
+    
     @Override
     public void onStart() {
+        outbound.start();
         LOG.info("Started");
     }
     
@@ -0,0 +1,254 @@
+package uk.co.risk.assessment.dao;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Players kept in an append-only log file. Each write appends one record per player and syncs the
+ * file once for the batch; loading replays the log with later records winning.
+ *
+ * Every record is its length, a CRC32 and the data, so a write torn by a crash shows up as a
+ * short or mismatched record at the end. Loading stops there and truncates the file back to the
+ * last good record, leaving the players as at the last completed batch.
+ *
+ * The log is compacted, rewritten with one record per player, at startup and whenever it holds
+ * several times more records than players. The rewrite goes to a separate file that is renamed
+ * over the log, so a crash part way through leaves the old log as it was.
+ *
+ */
+public class LogPlayerStore implements PlayerStore {
+    private static final Logger LOG = LoggerFactory.getLogger(LogPlayerStore.class);
+    
+    private static final int VERSION = 1;
+    // far bigger than any real record, anything larger is corruption
+    private static final int MAX_RECORD_BYTES = 4096;
+    private static final int COMPACT_RATIO = 4;
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    
+    private final Path path;
+    // latest record for each player, what compaction writes
+    private final Map<String, PlayerRecord> players = new HashMap<>();
+    private FileChannel log;
+    private int logRecords;
+    
+    public LogPlayerStore(Path path) {
+        this.path = path;
+    }
+    
+    @Override
+    public synchronized Map<String, PlayerRecord> load() throws IOException {
+        long good = 0;
+        if (Files.exists(path)) {
+            long size = Files.size(path);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 65536))) {
+                good = replay(in);
+            }
+            if (good < size) {
+                LOG.warn("Player store {} has {} bytes of incomplete or corrupt records after {}, dropping them",
+                        path, size - good, good);
+            }
+        }
+        log = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.truncate(good);
+        log.position(good);
+        LOG.info("Loaded {} players from {} records in {}", players.size(), logRecords, path);
+        if (logRecords > players.size()) {
+            compact();
+        }
+        return new HashMap<>(players);
+    }
+    
+    /* read records until the end or the first bad one, returning how many bytes were good */
+    private long replay(DataInputStream in) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[MAX_RECORD_BYTES];
+        long good = 0;
+        while (true) {
+            int length;
+            int checksum;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    return good;
+                }
+                in.readFully(buffer, 0, length);
+            } catch (EOFException e) {
+                return good;
+            }
+            crc.reset();
+            crc.update(buffer, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                return good;
+            }
+            PlayerRecord record = decode(new ByteArrayInputStream(buffer, 0, length));
+            if (record == null) {
+                return good;
+            }
+            players.put(record.getName(), record);
+            logRecords++;
+            good += 8 + length;
+        }
+    }
+    
+    @Override
+    public synchronized void write(Collection<PlayerRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (!log.isOpen()) {
+            log = openLog();
+        }
+        long start = log.position();
+        try {
+            append(log, records);
+            log.force(false);
+        } catch (IOException e) {
+            // don't leave half a batch in the log, the retry would go after it and never be loaded
+            try {
+                log.truncate(start);
+                log.position(start);
+            } catch (IOException truncating) {
+                e.addSuppressed(truncating);
+            }
+            throw e;
+        }
+        for (PlayerRecord record : records) {
+            players.put(record.getName(), record);
+        }
+        logRecords += records.size();
+        if (logRecords > COMPACT_MIN_RECORDS && logRecords > players.size() * COMPACT_RATIO) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // the batch is saved either way, compaction is tried again after the next one
+                LOG.error("Failed to compact player store {}", path, e);
+            }
+        }
+    }
+    
+    /* rewrite the log with just the latest record for each player */
+    private void compact() throws IOException {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        try {
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                append(out, players.values());
+                out.force(true);
+            }
+            // the old log stays open and in place until this works, so a failure leaves it as it was
+            Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(compacted);
+            } catch (IOException deleting) {
+                e.addSuppressed(deleting);
+            }
+            throw e;
+        }
+        // the old channel is on the file that was replaced; if reopening fails the next write tries again
+        log.close();
+        log = openLog();
+        LOG.info("Compacted player store {} from {} to {} records", path, logRecords, players.size());
+        logRecords = players.size();
+    }
+    
+    private FileChannel openLog() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+    
+    private static void append(FileChannel channel, Collection<PlayerRecord> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(records.size() * 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        CRC32 crc = new CRC32();
+        for (PlayerRecord record : records) {
+            payload.reset();
+            encode(record, new DataOutputStream(payload));
+            // loading would take it for corruption and drop everything after it
+            if (payload.size() > MAX_RECORD_BYTES) {
+                LOG.error("Not saving player {}..., record of {} bytes is too big",
+                        record.getName().substring(0, Math.min(32, record.getName().length())), payload.size());
+                continue;
+            }
+            crc.reset();
+            crc.update(payload.toByteArray(), 0, payload.size());
+            out.writeInt(payload.size());
+            out.writeInt((int) crc.getValue());
+            payload.writeTo(out);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    private static void encode(PlayerRecord record, DataOutputStream out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeUTF(record.getName());
+        out.writeInt(record.getChips());
+        out.writeInt(record.getBuyIns());
+        PasswordHash password = record.getPassword();
+        out.writeInt(password.getIterations());
+        byte[] salt = password.getSalt();
+        out.writeByte(salt.length);
+        out.write(salt);
+        byte[] hash = password.getHash();
+        out.writeByte(hash.length);
+        out.write(hash);
+    }
+    
+    /* null if the record isn't one we understand */
+    private static PlayerRecord decode(InputStream bytes) throws IOException {
+        DataInputStream in = new DataInputStream(bytes);
+        try {
+            if (in.readUnsignedByte() != VERSION) {
+                return null;
+            }
+            String name = in.readUTF();
+            int chips = in.readInt();
+            int buyIns = in.readInt();
+            int iterations = in.readInt();
+            byte[] salt = new byte[in.readUnsignedByte()];
+            in.readFully(salt);
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            return new PlayerRecord(name, chips, buyIns, new PasswordHash(iterations, salt, hash));
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package uk.co.risk.assessment.dao;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * A salted PBKDF2 hash of a password, all we keep of it. The iteration count is stored with each
+ * hash, so it can be raised for new players without locking out existing ones.
+ *
+ * Hashing is deliberately slow, a few tens of milliseconds, so keep it off the socket and table
+ * threads.
+ *
+ */
+public final class PasswordHash {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    private final int iterations;
+    private final byte[] salt;
+    private final byte[] hash;
+    
+    public PasswordHash(int iterations, byte[] salt, byte[] hash) {
+        this.iterations = iterations;
+        this.salt = salt;
+        this.hash = hash;
+    }
+    
+    public static PasswordHash create(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return new PasswordHash(iterations, salt, hash(password, salt, iterations));
+    }
+    
+    public boolean matches(String password) {
+        // constant time, so timing says nothing about how close a guess was
+        return MessageDigest.isEqual(hash, hash(password, salt, iterations));
+    }
+    
+    private static byte[] hash(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // every Java 8 runtime has it
+            throw new IllegalStateException("Cannot hash with " + ALGORITHM, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+    
+    public int getIterations() {
+        return iterations;
+    }
+    
+    public byte[] getSalt() {
+        return Arrays.copyOf(salt, salt.length);
+    }
+    
+    public byte[] getHash() {
+        return Arrays.copyOf(hash, hash.length);
+    }
+}
@@ -1,7 +1,16 @@
 package uk.co.risk.assessment.dao;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,31 +18,167 @@ import org.slf4j.LoggerFactory;
 import uk.co.risk.assessment.message.NewPlayerMessage;
 import uk.co.risk.assessment.model.Player;
 
+/**
+ * Players and their passwords, shared by every table. Passwords are only kept as salted hashes,
+ * checked on a small pool of their own so logins can't hold up the socket threads.
+ *
+ * With a PlayerStore, each player's chips are saved at the end of every hand, written behind so
+ * that game threads never wait on the disk. Set from the environment:
+ *
+ * PLAYER_STORE_FILE - log file to keep players in, without it they are lost on restart
+ * PASSWORD_ITERATIONS - PBKDF2 iterations for new passwords (default 100000)
+ * LOGIN_THREADS - threads checking passwords (default 2)
+ *
+ */
 public class PlayerDAO {
     
     private static final Logger LOG = LoggerFactory.getLogger(PlayerDAO.class);
-
-    private Map<String, String> passwords = new HashMap<>();
-    private Map<String, Player> players = new HashMap<>();
     
+    public static final int DEFAULT_ITERATIONS = 100000;
+    // longer names are turned away, which keeps every player record well inside what a store takes
+    public static final int MAX_NAME_LENGTH = 64;
+    // logins waiting for a password check beyond this are turned away
+    private static final int LOGIN_QUEUE = 256;
+    
+    /* a player and what we keep of their password */
+    private static class Account {
+        final Player player;
+        final PasswordHash password;
+        
+        Account(Player player, PasswordHash password) {
+            this.player = player;
+            this.password = password;
+        }
+    }
+    
+    // shared by every table, so read from many threads at once
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final int iterations;
+    private final ExecutorService logins;
+    // null if nothing is persisted
+    private final StoreWriter writer;
+    
+    /* players kept in memory only */
+    public PlayerDAO() {
+        this(null, DEFAULT_ITERATIONS, 1);
+    }
+    
+    public PlayerDAO(PlayerStore store, int iterations, int loginThreads) {
+        if (iterations < 1 || loginThreads < 1) {
+            throw new IllegalArgumentException("Password iterations and login threads must be positive");
+        }
+        this.iterations = iterations;
+        AtomicInteger threadCount = new AtomicInteger();
+        logins = new ThreadPoolExecutor(loginThreads, loginThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(LOGIN_QUEUE), r -> {
+                    Thread thread = new Thread(r, "login-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        if (store == null) {
+            writer = null;
+            return;
+        }
+        try {
+            for (PlayerRecord record : store.load().values()) {
+                Player player = new Player(record.getName());
+                player.setChips(record.getChips());
+                player.setBuyIns(record.getBuyIns());
+                accounts.put(record.getName(), new Account(player, record.getPassword()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load players from " + store, e);
+        }
+        writer = new StoreWriter(store);
+    }
+    
+    public static PlayerDAO fromEnvironment() {
+        int iterations = envInt("PASSWORD_ITERATIONS", DEFAULT_ITERATIONS);
+        int loginThreads = envInt("LOGIN_THREADS", 2);
+        String file = System.getenv("PLAYER_STORE_FILE");
+        if (file == null || file.trim().isEmpty()) {
+            LOG.warn("PLAYER_STORE_FILE not set, players will be lost on restart");
+            return new PlayerDAO(null, iterations, loginThreads);
+        }
+        return new PlayerDAO(new LogPlayerStore(Paths.get(file.trim())), iterations, loginThreads);
+    }
+    
+    private static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number: " + value);
+        }
+    }
+    
+    /*
+     * newPlayer on the login pool. Fails with a RejectedExecutionException if too many logins are
+     * already waiting.
+     */
+    public CompletableFuture<Player> login(NewPlayerMessage newPlayerMessage) {
+        try {
+            return CompletableFuture.supplyAsync(() -> newPlayer(newPlayerMessage), logins);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<Player> busy = new CompletableFuture<>();
+            busy.completeExceptionally(e);
+            return busy;
+        }
+    }
+    
+    /*
+     * the player, created if the name is new, or null if the password is wrong or the name isn't
+     * one we take. Slow, see login.
+     */
     public Player newPlayer(NewPlayerMessage newPlayerMessage) {
-        String password = passwords.get(newPlayerMessage.getName());
-        if (password != null) {
-            LOG.info("Got existing player for {} with password {}", newPlayerMessage.getName(), password );
-            if (!password.equals(newPlayerMessage.getPassword())) {
-                return null;
-            } else {
-                return players.get(newPlayerMessage.getName());
+        String name = newPlayerMessage.getName();
+        if (name == null || name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+            LOG.info("Refused player name of {} characters", name == null ? 0 : name.length());
+            return null;
+        }
+        String password = newPlayerMessage.getPassword() == null ? "" : newPlayerMessage.getPassword();
+        Account account = accounts.get(name);
+        if (account == null) {
+            // hash before claiming the name, if someone beats us to it we check against theirs instead
+            Account created = new Account(new Player(name), PasswordHash.create(password, iterations));
+            account = accounts.putIfAbsent(name, created);
+            if (account == null) {
+                LOG.info("Created new player {}", name);
+                save(created.player);
+                return created.player;
             }
-        } else {
-            passwords.put(newPlayerMessage.getName(), newPlayerMessage.getPassword());
-            Player player = new Player(newPlayerMessage.getName());
-            players.put(newPlayerMessage.getName(), player);
-            return player;
         }
+        if (!account.password.matches(password)) {
+            LOG.info("Wrong password for existing player {}", name);
+            return null;
+        }
+        return account.player;
     }
     
     public Player getPlayer(String name) {
-        return players.get(name);
+        Account account = accounts.get(name);
+        return account == null ? null : account.player;
+    }
+    
+    /* queue the player's chips to be saved. Call from the thread running their table. */
+    public void save(Player player) {
+        if (writer == null || player == null) {
+            return;
+        }
+        Account account = accounts.get(player.getName());
+        if (account != null) {
+            writer.queue(new PlayerRecord(player.getName(), player.getChips(), player.getBuyIns(), account.password));
+        }
+    }
+    
+    /* write out anything not yet saved, for shutdown */
+    public void close() {
+        logins.shutdown();
+        if (writer != null) {
+            writer.close();
+        }
     }
 }
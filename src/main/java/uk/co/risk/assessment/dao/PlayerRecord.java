@@ -0,0 +1,36 @@
+package uk.co.risk.assessment.dao;
+
+/**
+ * What is persisted about a player: their password hash and their chips as at the end of a hand.
+ * Immutable, so it can be handed to the store's writer thread while the player plays on.
+ *
+ */
+public final class PlayerRecord {
+    private final String name;
+    private final int chips;
+    private final int buyIns;
+    private final PasswordHash password;
+    
+    public PlayerRecord(String name, int chips, int buyIns, PasswordHash password) {
+        this.name = name;
+        this.chips = chips;
+        this.buyIns = buyIns;
+        this.password = password;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getChips() {
+        return chips;
+    }
+    
+    public int getBuyIns() {
+        return buyIns;
+    }
+    
+    public PasswordHash getPassword() {
+        return password;
+    }
+}
@@ -0,0 +1,21 @@
+package uk.co.risk.assessment.dao;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Where PlayerDAO keeps players between restarts. Only ever written from one thread at a time, a
+ * batch at once, so an implementation can make each batch durable with a single sync.
+ *
+ */
+public interface PlayerStore {
+    
+    /* every player as last written, by name. Called once, before any write. */
+    Map<String, PlayerRecord> load() throws IOException;
+    
+    /* newer records replace older ones for the same player */
+    void write(Collection<PlayerRecord> records) throws IOException;
+    
+    void close() throws IOException;
+}
@@ -0,0 +1,90 @@
+package uk.co.risk.assessment.dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind for a PlayerStore. Queuing a record is just a map put, so table threads never wait
+ * on the disk; one thread writes whatever has been queued every so often as a single batch. Only
+ * the latest record for each player is kept while waiting, so a busy player costs one record per
+ * batch however many hands they finish.
+ *
+ */
+class StoreWriter {
+    private static final Logger LOG = LoggerFactory.getLogger(StoreWriter.class);
+    
+    // how long a finished hand can wait to be written, and so what a crash can lose
+    private static final long FLUSH_MILLIS = 200;
+    
+    private final PlayerStore store;
+    private final Map<String, PlayerRecord> pending = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    
+    StoreWriter(PlayerStore store) {
+        this.store = store;
+        thread = new Thread(this::run, "player-store");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    void queue(PlayerRecord record) {
+        pending.put(record.getName(), record);
+    }
+    
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(FLUSH_MILLIS);
+            } catch (InterruptedException e) {
+                // closing, flush what's left below
+            }
+            flush();
+        }
+    }
+    
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<PlayerRecord> batch = new ArrayList<>(pending.size());
+        for (String name : pending.keySet()) {
+            PlayerRecord record = pending.remove(name);
+            if (record != null) {
+                batch.add(record);
+            }
+        }
+        try {
+            store.write(batch);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to write {} players to {}, will retry", batch.size(), store, e);
+            // put them back unless something newer has been queued meanwhile
+            for (PlayerRecord record : batch) {
+                pending.putIfAbsent(record.getName(), record);
+            }
+        }
+    }
+    
+    /* write out everything queued so far and stop */
+    void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(FLUSH_MILLIS * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            store.close();
+        } catch (IOException e) {
+            LOG.error("Failed to close player store {}", store, e);
+        }
+    }
+}
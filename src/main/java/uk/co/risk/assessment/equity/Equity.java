@@ -0,0 +1,64 @@
+package uk.co.risk.assessment.equity;
+
+import uk.co.risk.assessment.model.Table;
+
+/**
+ * Chances of each seat winning, tying or losing at showdown, indexed by seat like the players on
+ * the Table. Seats not in the hand are left at zero. Equity is the expected share of the pot, with
+ * ties split between the players involved.
+ *
+ */
+public class Equity {
+    private final double[] win = new double[Table.MAX_PLAYERS];
+    private final double[] tie = new double[Table.MAX_PLAYERS];
+    private final double[] lose = new double[Table.MAX_PLAYERS];
+    private final double[] equity = new double[Table.MAX_PLAYERS];
+    // how many boards the figures are based on
+    private final long boards;
+    // true if every possible board was looked at rather than a sample
+    private final boolean exact;
+    // false if we ran out of time before covering all the boards we meant to
+    private final boolean complete;
+    
+    Equity(int[] seats, ShowdownTally tally, boolean exact, boolean complete) {
+        this.boards = tally.boards;
+        this.exact = exact;
+        this.complete = complete;
+        if (boards > 0) {
+            for (int i = 0; i < seats.length; i++) {
+                win[seats[i]] = (double) tally.wins[i] / boards;
+                tie[seats[i]] = (double) tally.ties[i] / boards;
+                lose[seats[i]] = 1.0 - win[seats[i]] - tie[seats[i]];
+                equity[seats[i]] = tally.shares[i] / boards;
+            }
+        }
+    }
+    
+    public double[] getWin() {
+        return win;
+    }
+    
+    public double[] getTie() {
+        return tie;
+    }
+    
+    public double[] getLose() {
+        return lose;
+    }
+    
+    public double[] getEquity() {
+        return equity;
+    }
+    
+    public long getBoards() {
+        return boards;
+    }
+    
+    public boolean isExact() {
+        return exact;
+    }
+    
+    public boolean isComplete() {
+        return complete;
+    }
+}
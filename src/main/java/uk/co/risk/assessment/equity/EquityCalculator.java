@@ -0,0 +1,88 @@
+package uk.co.risk.assessment.equity;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.Cards;
+import uk.co.risk.assessment.model.Game;
+import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.model.Table;
+
+/**
+ * Works out each seat's chances at showdown from the hole cards and however much of the board has
+ * been dealt. If there are no more possible boards than the board budget, every one is looked at,
+ * which always covers the turn and river and covers the flop unless the budget is tiny; otherwise
+ * (preflop, in practice) a random sample of that many boards is used. The work is spread over a
+ * fork/join pool and stops early if it runs past the time budget, so results come back in bounded
+ * time, flagged as incomplete if they were cut short.
+ *
+ */
+public class EquityCalculator {
+    public static final long DEFAULT_MAX_BOARDS = 100000;
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 5;
+    
+    private final ForkJoinPool pool;
+    private final long maxBoards;
+    // 0 for no limit
+    private final long timeBudgetMillis;
+    
+    public EquityCalculator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MAX_BOARDS, DEFAULT_TIME_BUDGET_MILLIS);
+    }
+    
+    public EquityCalculator(ForkJoinPool pool, long maxBoards, long timeBudgetMillis) {
+        this.pool = pool;
+        this.maxBoards = maxBoards;
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+    
+    /* equity of the seats still in the current hand, as far as the table has got */
+    public Equity calculate(Game game) {
+        Card[][] hands = game.getHands();
+        Card[][] inHand = new Card[Table.MAX_PLAYERS][];
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            Player p = game.getTable().getPlayers()[i];
+            if (p != null && !p.isPaused() && !p.isFolded()) {
+                inHand[i] = hands[i];
+            }
+        }
+        return calculate(inHand, game.getTable().getCards());
+    }
+    
+    /* hole cards by seat, seats without two cards are ignored. Undealt board cards are null. */
+    public Equity calculate(Card[][] holeCards, Card[] board) {
+        int numSeats = 0;
+        int[] seats = new int[holeCards.length];
+        long[] hands = new long[holeCards.length];
+        long dead = 0L;
+        for (int i = 0; i < holeCards.length; i++) {
+            Card[] cards = holeCards[i];
+            if (cards != null && cards.length == 2 && cards[0] != null && cards[1] != null) {
+                seats[numSeats] = i;
+                hands[numSeats++] = Cards.mask(cards);
+                dead |= Cards.mask(cards);
+            }
+        }
+        int[] inHand = new int[numSeats];
+        long[] handsInHand = new long[numSeats];
+        System.arraycopy(seats, 0, inHand, 0, numSeats);
+        System.arraycopy(hands, 0, handsInHand, 0, numSeats);
+        
+        long boardCards = Cards.mask(board);
+        int missing = 5 - Cards.size(boardCards);
+        long possible = Runouts.count(Runouts.remaining(dead | boardCards).length, missing);
+        Stop stop = timeBudgetMillis > 0 ? Stop.after(timeBudgetMillis) : Stop.never();
+        
+        ShowdownTally tally;
+        boolean exact = possible <= maxBoards;
+        if (exact) {
+            tally = Runouts.enumerate(pool, boardCards, dead, missing,
+                    () -> new ShowdownTally(handsInHand), stop);
+        } else {
+            tally = Runouts.sample(pool, boardCards, dead, missing, maxBoards,
+                    ThreadLocalRandom.current().nextLong(), () -> new ShowdownTally(handsInHand), stop);
+        }
+        return new Equity(inHand, tally, exact, tally.boards == (exact ? possible : maxBoards));
+    }
+}
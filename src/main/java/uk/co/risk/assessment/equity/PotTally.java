@@ -0,0 +1,66 @@
+package uk.co.risk.assessment.equity;
+
+import uk.co.risk.assessment.model.HandEvaluator;
+
+/**
+ * Adds up what each seat wins from each pot over the boards it is given, splitting ties evenly.
+ *
+ */
+final class PotTally implements Runouts.Accumulator<PotTally> {
+    private final long[] holeCards;
+    private final int[] amounts;
+    // by pot, then by index into holeCards
+    private final boolean[][] eligible;
+    private final int[] strengths;
+    final double[][] chips;
+    long boards;
+    
+    PotTally(long[] holeCards, int[] amounts, boolean[][] eligible) {
+        this.holeCards = holeCards;
+        this.amounts = amounts;
+        this.eligible = eligible;
+        strengths = new int[holeCards.length];
+        chips = new double[amounts.length][holeCards.length];
+    }
+    
+    @Override
+    public void add(long board) {
+        for (int i = 0; i < holeCards.length; i++) {
+            strengths[i] = HandEvaluator.evaluate(holeCards[i] | board);
+        }
+        for (int pot = 0; pot < amounts.length; pot++) {
+            int best = -1;
+            int numBest = 0;
+            for (int i = 0; i < holeCards.length; i++) {
+                if (eligible[pot][i]) {
+                    if (strengths[i] > best) {
+                        best = strengths[i];
+                        numBest = 1;
+                    } else if (strengths[i] == best) {
+                        numBest++;
+                    }
+                }
+            }
+            if (numBest > 0) {
+                double share = (double) amounts[pot] / numBest;
+                for (int i = 0; i < holeCards.length; i++) {
+                    if (eligible[pot][i] && strengths[i] == best) {
+                        chips[pot][i] += share;
+                    }
+                }
+            }
+        }
+        boards++;
+    }
+    
+    @Override
+    public PotTally merge(PotTally other) {
+        for (int pot = 0; pot < amounts.length; pot++) {
+            for (int i = 0; i < holeCards.length; i++) {
+                chips[pot][i] += other.chips[pot][i];
+            }
+        }
+        boards += other.boards;
+        return this;
+    }
+}
@@ -0,0 +1,49 @@
+package uk.co.risk.assessment.equity;
+
+import uk.co.risk.assessment.model.Table;
+
+/**
+ * Expected chips each seat takes from each pot, averaged over every way the board can run out.
+ *
+ */
+public class Runout {
+    // by pot, then by seat
+    private final double[][] expectedChips;
+    private final long boards;
+    // false if cancelled or out of time before every board was looked at
+    private final boolean complete;
+    
+    Runout(int[] seats, PotTally tally, boolean complete) {
+        this.boards = tally.boards;
+        this.complete = complete;
+        expectedChips = new double[tally.chips.length][Table.MAX_PLAYERS];
+        if (boards > 0) {
+            for (int pot = 0; pot < tally.chips.length; pot++) {
+                for (int i = 0; i < seats.length; i++) {
+                    expectedChips[pot][seats[i]] = tally.chips[pot][i] / boards;
+                }
+            }
+        }
+    }
+    
+    public double[][] getExpectedChips() {
+        return expectedChips;
+    }
+    
+    /* expected chips for a seat over all pots */
+    public double getExpectedChips(int seat) {
+        double total = 0;
+        for (int pot = 0; pot < expectedChips.length; pot++) {
+            total += expectedChips[pot][seat];
+        }
+        return total;
+    }
+    
+    public long getBoards() {
+        return boards;
+    }
+    
+    public boolean isComplete() {
+        return complete;
+    }
+}
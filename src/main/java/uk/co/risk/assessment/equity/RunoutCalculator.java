@@ -0,0 +1,85 @@
+package uk.co.risk.assessment.equity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.Cards;
+
+/**
+ * Once everyone is all in, enumerates every remaining board (up to about 1.7 million of them from
+ * preflop) across a fork/join pool to work out what each seat can expect from each side pot. Pass
+ * a Stop to bound the time taken or to cancel from another thread; a cut short Runout is flagged as
+ * incomplete and shouldn't be trusted, as the boards covered aren't a random sample. A game's
+ * thread shouldn't wait on one, calculateAsync runs it on the pool instead.
+ *
+ */
+public class RunoutCalculator {
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 200;
+    
+    private final ForkJoinPool pool;
+    private final long timeBudgetMillis;
+    
+    public RunoutCalculator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TIME_BUDGET_MILLIS);
+    }
+    
+    public RunoutCalculator(ForkJoinPool pool, long timeBudgetMillis) {
+        this.pool = pool;
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+    
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+    
+    /* a Stop for our own time budget, starting now, which can also be cancelled */
+    public Stop newStop() {
+        return timeBudgetMillis > 0 ? Stop.after(timeBudgetMillis) : Stop.never();
+    }
+    
+    /* uses our own time budget */
+    public Runout calculate(Card[][] holeCards, Card[] board, int[] potAmounts, boolean[][] potPlayers) {
+        return calculate(holeCards, board, potAmounts, potPlayers, newStop());
+    }
+    
+    /* as calculate, but on the pool rather than the caller's thread. Don't change the arrays meanwhile. */
+    public CompletableFuture<Runout> calculateAsync(Card[][] holeCards, Card[] board, int[] potAmounts,
+            boolean[][] potPlayers, Stop stop) {
+        return CompletableFuture.supplyAsync(() -> calculate(holeCards, board, potAmounts, potPlayers, stop), pool);
+    }
+    
+    /*
+     * hole cards by seat (null for seats not in the hand), undealt board cards null, and for each pot
+     * its size and which seats can win it.
+     */
+    public Runout calculate(Card[][] holeCards, Card[] board, int[] potAmounts, boolean[][] potPlayers,
+            Stop stop) {
+        int numSeats = 0;
+        int[] seats = new int[holeCards.length];
+        for (int i = 0; i < holeCards.length; i++) {
+            if (holeCards[i] != null && holeCards[i][0] != null && holeCards[i][1] != null) {
+                seats[numSeats++] = i;
+            }
+        }
+        int[] inHand = new int[numSeats];
+        long[] hands = new long[numSeats];
+        boolean[][] eligible = new boolean[potAmounts.length][numSeats];
+        long dead = 0L;
+        for (int i = 0; i < numSeats; i++) {
+            inHand[i] = seats[i];
+            hands[i] = Cards.mask(holeCards[seats[i]]);
+            dead |= hands[i];
+            for (int pot = 0; pot < potAmounts.length; pot++) {
+                eligible[pot][i] = potPlayers[pot][seats[i]];
+            }
+        }
+        long boardCards = Cards.mask(board);
+        int missing = 5 - Cards.size(boardCards);
+        long possible = Runouts.count(Runouts.remaining(dead | boardCards).length, missing);
+        
+        PotTally tally = Runouts.enumerate(pool, boardCards, dead, missing,
+                () -> new PotTally(hands, potAmounts, eligible), stop);
+        return new Runout(inHand, tally, tally.boards == possible);
+    }
+}
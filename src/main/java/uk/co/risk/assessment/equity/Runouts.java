@@ -0,0 +1,190 @@
+package uk.co.risk.assessment.equity;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import uk.co.risk.assessment.model.Cards;
+
+/**
+ * Runs an accumulator over the ways a partial board can be completed, either every one of them or
+ * a random sample, split into fork/join tasks. Boards are passed around in the Cards bitmask
+ * encoding, so nothing is allocated per board.
+ *
+ */
+final class Runouts {
+    
+    /* collects results for the boards one task sees. Tasks each get their own and merge at the end. */
+    interface Accumulator<T extends Accumulator<T>> {
+        void add(long board);
+        
+        T merge(T other);
+    }
+    
+    // how many boards a task deals with between checks of the stop condition
+    private static final int CHECK_INTERVAL = 1024;
+    // samples per leaf task when sampling
+    private static final long SAMPLE_CHUNK = 4096;
+    
+    private Runouts() {
+    }
+    
+    /* number of distinct ways of choosing k of n cards */
+    static long count(int n, int k) {
+        if (k < 0 || k > n) {
+            return 0;
+        }
+        long result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+    
+    /* cards not in the dead set, in index order */
+    static int[] remaining(long dead) {
+        long live = Cards.FULL_DECK & ~dead;
+        int[] cards = new int[Cards.size(live)];
+        for (int i = 0; live != 0; i++, live &= live - 1) {
+            cards[i] = Cards.first(live);
+        }
+        return cards;
+    }
+    
+    /* every completion of the board using cards not already dead */
+    static <T extends Accumulator<T>> T enumerate(ForkJoinPool pool, long board, long dead, int missing,
+            Supplier<T> accumulators, Stop stop) {
+        int[] cards = remaining(dead | board);
+        if (missing == 0) {
+            T accumulator = accumulators.get();
+            accumulator.add(board);
+            return accumulator;
+        }
+        return pool.invoke(new EnumerateTask<>(cards, board, missing, 0, cards.length - missing + 1,
+                accumulators, stop));
+    }
+    
+    /* random completions of the board, stopping early if the stop condition says so */
+    static <T extends Accumulator<T>> T sample(ForkJoinPool pool, long board, long dead, int missing,
+            long samples, long seed, Supplier<T> accumulators, Stop stop) {
+        int[] cards = remaining(dead | board);
+        return pool.invoke(new SampleTask<>(cards, board, missing, samples, new SplittableRandom(seed),
+                accumulators, stop));
+    }
+    
+    /* covers every board whose lowest new card is at a position in [from, to) of the remaining cards */
+    private static final class EnumerateTask<T extends Accumulator<T>> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+        
+        private final int[] cards;
+        private final long board;
+        private final int missing;
+        private final int from;
+        private final int to;
+        private final Supplier<T> accumulators;
+        private final Stop stop;
+        private int sinceCheck;
+        
+        EnumerateTask(int[] cards, long board, int missing, int from, int to, Supplier<T> accumulators,
+                Stop stop) {
+            this.cards = cards;
+            this.board = board;
+            this.missing = missing;
+            this.from = from;
+            this.to = to;
+            this.accumulators = accumulators;
+            this.stop = stop;
+        }
+        
+        @Override
+        protected T compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                EnumerateTask<T> left = new EnumerateTask<>(cards, board, missing, from, middle,
+                        accumulators, stop);
+                left.fork();
+                T right = new EnumerateTask<>(cards, board, missing, middle, to, accumulators, stop)
+                        .compute();
+                return left.join().merge(right);
+            }
+            T accumulator = accumulators.get();
+            if (from < to && !stop.isStopped()) {
+                deal(accumulator, from + 1, missing - 1, board | Cards.mask(cards[from]));
+            }
+            return accumulator;
+        }
+        
+        /* returns false once told to stop */
+        private boolean deal(T accumulator, int start, int toDeal, long soFar) {
+            if (toDeal == 0) {
+                accumulator.add(soFar);
+                if (++sinceCheck == CHECK_INTERVAL) {
+                    sinceCheck = 0;
+                    return !stop.isStopped();
+                }
+                return true;
+            }
+            for (int i = start; i <= cards.length - toDeal; i++) {
+                if (!deal(accumulator, i + 1, toDeal - 1, soFar | Cards.mask(cards[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private static final class SampleTask<T extends Accumulator<T>> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+        
+        private final int[] cards;
+        private final long board;
+        private final int missing;
+        private final long samples;
+        private final SplittableRandom random;
+        private final Supplier<T> accumulators;
+        private final Stop stop;
+        
+        SampleTask(int[] cards, long board, int missing, long samples, SplittableRandom random,
+                Supplier<T> accumulators, Stop stop) {
+            this.cards = cards;
+            this.board = board;
+            this.missing = missing;
+            this.samples = samples;
+            this.random = random;
+            this.accumulators = accumulators;
+            this.stop = stop;
+        }
+        
+        @Override
+        protected T compute() {
+            if (samples > SAMPLE_CHUNK) {
+                long half = samples >>> 1;
+                SampleTask<T> left = new SampleTask<>(cards, board, missing, half, random.split(),
+                        accumulators, stop);
+                left.fork();
+                T right = new SampleTask<>(cards, board, missing, samples - half, random.split(),
+                        accumulators, stop).compute();
+                return left.join().merge(right);
+            }
+            T accumulator = accumulators.get();
+            // partial Fisher-Yates over our own copy of the live cards for each sample
+            int[] deck = cards.clone();
+            for (long n = 0; n < samples; n++) {
+                if ((n & (CHECK_INTERVAL - 1)) == 0 && stop.isStopped()) {
+                    break;
+                }
+                long sample = board;
+                for (int i = 0; i < missing; i++) {
+                    int j = i + random.nextInt(deck.length - i);
+                    int swap = deck[i];
+                    deck[i] = deck[j];
+                    deck[j] = swap;
+                    sample |= Cards.mask(deck[i]);
+                }
+                accumulator.add(sample);
+            }
+            return accumulator;
+        }
+    }
+}
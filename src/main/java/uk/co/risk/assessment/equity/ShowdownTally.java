@@ -0,0 +1,64 @@
+package uk.co.risk.assessment.equity;
+
+import uk.co.risk.assessment.model.HandEvaluator;
+
+/**
+ * Counts wins, ties and losses for a fixed set of hole cards over the boards it is given.
+ *
+ */
+final class ShowdownTally implements Runouts.Accumulator<ShowdownTally> {
+    private final long[] holeCards;
+    private final int[] strengths;
+    final long[] wins;
+    final long[] ties;
+    // fraction of the pot won on each board, summed
+    final double[] shares;
+    long boards;
+    
+    ShowdownTally(long[] holeCards) {
+        this.holeCards = holeCards;
+        strengths = new int[holeCards.length];
+        wins = new long[holeCards.length];
+        ties = new long[holeCards.length];
+        shares = new double[holeCards.length];
+    }
+    
+    @Override
+    public void add(long board) {
+        int best = -1;
+        int numBest = 0;
+        for (int i = 0; i < holeCards.length; i++) {
+            int strength = HandEvaluator.evaluate(holeCards[i] | board);
+            strengths[i] = strength;
+            if (strength > best) {
+                best = strength;
+                numBest = 1;
+            } else if (strength == best) {
+                numBest++;
+            }
+        }
+        double share = 1.0 / numBest;
+        for (int i = 0; i < holeCards.length; i++) {
+            if (strengths[i] == best) {
+                if (numBest == 1) {
+                    wins[i]++;
+                } else {
+                    ties[i]++;
+                }
+                shares[i] += share;
+            }
+        }
+        boards++;
+    }
+    
+    @Override
+    public ShowdownTally merge(ShowdownTally other) {
+        for (int i = 0; i < holeCards.length; i++) {
+            wins[i] += other.wins[i];
+            ties[i] += other.ties[i];
+            shares[i] += other.shares[i];
+        }
+        boards += other.boards;
+        return this;
+    }
+}
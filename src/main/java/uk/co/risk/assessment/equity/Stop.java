@@ -0,0 +1,34 @@
+package uk.co.risk.assessment.equity;
+
+/**
+ * Tells running calculations when to give up: either a deadline has passed or someone has cancelled.
+ *
+ */
+public final class Stop {
+    private final long deadline;
+    private volatile boolean cancelled = false;
+    
+    private Stop(long deadline) {
+        this.deadline = deadline;
+    }
+    
+    public static Stop never() {
+        return new Stop(Long.MAX_VALUE);
+    }
+    
+    public static Stop after(long millis) {
+        return new Stop(System.nanoTime() + millis * 1000000L);
+    }
+    
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    public boolean isStopped() {
+        return cancelled || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0);
+    }
+}
@@ -0,0 +1,13 @@
+package uk.co.risk.assessment.history;
+
+/**
+ * Somewhere finished hands are kept. Called from table threads, so append must not wait on I/O.
+ *
+ */
+public interface HandJournal {
+    
+    void append(HandRecord hand);
+    
+    /* write out whatever has been appended and stop */
+    void close();
+}
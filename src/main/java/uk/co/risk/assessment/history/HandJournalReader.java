@@ -0,0 +1,85 @@
+package uk.co.risk.assessment.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads back the segments written by MappedHandJournal.
+ *
+ */
+public class HandJournalReader {
+    private static final Logger LOG = LoggerFactory.getLogger(HandJournalReader.class);
+    
+    private HandJournalReader() {
+    }
+    
+    /* the segment itself, or every segment in a directory in the order they were written */
+    public static List<Path> segments(Path path) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(path)) {
+            segments.add(path);
+            return segments;
+        }
+        try (DirectoryStream<Path> found = Files.newDirectoryStream(path, "hands-*.log")) {
+            for (Path segment : found) {
+                segments.add(segment);
+            }
+        }
+        // names are zero padded, so this is the order they were written
+        Collections.sort(segments);
+        return segments;
+    }
+    
+    /* every hand in the segment up to the end of what was written, returning how many */
+    public static long read(Path segment, Consumer<HandRecord> hands) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (in.remaining() < MappedHandJournal.HEADER_BYTES || in.getInt() != MappedHandJournal.MAGIC) {
+            throw new IOException(segment + " is not a hand history segment");
+        }
+        in.getInt();
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[4096];
+        long count = 0;
+        while (in.remaining() >= 8) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > in.remaining()) {
+                LOG.warn("Bad hand length {} in {} after {} hands, stopping there", length, segment, count);
+                break;
+            }
+            if (record.length < length) {
+                record = new byte[length];
+            }
+            in.get(record, 0, length);
+            crc.reset();
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                LOG.warn("Torn or corrupt hand in {} after {} hands, stopping there", segment, count);
+                break;
+            }
+            hands.accept(HandRecord.readFrom(ByteBuffer.wrap(record, 0, length)));
+            count++;
+        }
+        return count;
+    }
+}
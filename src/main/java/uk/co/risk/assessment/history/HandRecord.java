@@ -0,0 +1,366 @@
+package uk.co.risk.assessment.history;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import uk.co.risk.assessment.model.ActionType;
+import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.Cards;
+import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.model.Table;
+
+/**
+ * One hand as it was played, filled in by Game from the deal to the last pot being paid out and
+ * then handed to a HandJournal. Only touched by the table's thread until it is finished, and not
+ * at all after, so the journal can encode it on its own thread.
+ *
+ * Written as, all numbers big endian:
+ *
+ * version byte, table id (short length then UTF-8), hand number long, start time millis long,
+ * dealer byte, small blind int, big blind int, leftover in int, leftover out int,
+ * seated mask short, dealt in mask short,
+ * for each seated seat: name (short length then UTF-8), starting chips int, final chips int,
+ * for each dealt in seat: its two hole cards as bytes,
+ * the five board cards as bytes,
+ * action count short, for each: seat byte, type byte (an ActionType ordinal or LEFT), amount int,
+ * pot count byte, for each: amount int, winners mask short, share each int. Chips that don't split
+ * evenly go one more each to the winners first after the dealer.
+ *
+ * Cards are Cards indexes, with 255 for no card.
+ *
+ */
+public class HandRecord {
+    
+    public static final int VERSION = 1;
+    // action type for a player who left during the hand
+    public static final int LEFT = 255;
+    // table ids and names are written with an unsigned short length
+    public static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final int NO_CARD = 255;
+    // anything past this is dropped, only possible by spamming the testing commands
+    private static final int MAX_ACTIONS = Short.MAX_VALUE;
+    
+    private final String tableId;
+    private final long handNumber;
+    private final long startMillis;
+    private int dealer;
+    private int smallBlind;
+    private int bigBlind;
+    private int leftoverIn;
+    private int leftoverOut;
+    
+    // by seat, as at the deal
+    private final Player[] players = new Player[Table.MAX_PLAYERS];
+    private final String[] names = new String[Table.MAX_PLAYERS];
+    private final int[] startChips = new int[Table.MAX_PLAYERS];
+    private final int[] finalChips = new int[Table.MAX_PLAYERS];
+    private int seated;
+    private int dealtIn;
+    private final int[] holeCards = new int[Table.MAX_PLAYERS * 2];
+    private final int[] board = new int[5];
+    
+    private int actions;
+    private byte[] actionSeats = new byte[32];
+    private byte[] actionTypes = new byte[32];
+    private int[] actionAmounts = new int[32];
+    
+    private int pots;
+    private final int[] potAmounts = new int[Table.MAX_PLAYERS];
+    private final int[] potWinners = new int[Table.MAX_PLAYERS];
+    private final int[] potShares = new int[Table.MAX_PLAYERS];
+    
+    private boolean finished;
+    
+    public HandRecord(String tableId, long handNumber, long startMillis) {
+        this.tableId = tableId;
+        this.handNumber = handNumber;
+        this.startMillis = startMillis;
+    }
+    
+    /* who is sitting where with what, taken before the blinds go in */
+    public void begin(Table table, int leftover) {
+        dealer = table.getDealer();
+        smallBlind = table.getSmallBlind();
+        bigBlind = table.getBigBlind();
+        leftoverIn = leftover;
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            Player p = table.getPlayers()[i];
+            if (p != null) {
+                seated |= 1 << i;
+                players[i] = p;
+                names[i] = p.getName();
+                startChips[i] = p.getChips();
+            }
+        }
+    }
+    
+    public void dealtIn(int seat) {
+        dealtIn |= 1 << seat;
+    }
+    
+    /* an accepted action, seat -1 if the player wasn't seated */
+    public void action(int seat, ActionType type, int amount) {
+        addAction(seat, type.ordinal(), amount);
+    }
+    
+    public void left(int seat) {
+        addAction(seat, LEFT, 0);
+    }
+    
+    private void addAction(int seat, int type, int amount) {
+        if (actions == MAX_ACTIONS) {
+            return;
+        }
+        if (actions == actionSeats.length) {
+            actionSeats = Arrays.copyOf(actionSeats, actions * 2);
+            actionTypes = Arrays.copyOf(actionTypes, actions * 2);
+            actionAmounts = Arrays.copyOf(actionAmounts, actions * 2);
+        }
+        actionSeats[actions] = (byte) seat;
+        actionTypes[actions] = (byte) type;
+        actionAmounts[actions] = amount;
+        actions++;
+    }
+    
+    /* a pot paid out, share being what each of the winners got from it before any odd chips */
+    public void pot(int amount, int winners, int share) {
+        if (pots < potAmounts.length) {
+            potAmounts[pots] = amount;
+            potWinners[pots] = winners;
+            potShares[pots] = share;
+            pots++;
+        }
+    }
+    
+    /* the cards as they ended up and everyone's chips after the pots are paid */
+    public void finish(Card[][] hands, Card[] cards, int leftover) {
+        leftoverOut = leftover;
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            if (players[i] != null) {
+                finalChips[i] = players[i].getChips();
+                // nothing more to read from them, and the record may be queued a while
+                players[i] = null;
+            }
+            boolean dealt = (dealtIn & (1 << i)) != 0;
+            holeCards[i * 2] = dealt ? card(hands[i][0]) : NO_CARD;
+            holeCards[i * 2 + 1] = dealt ? card(hands[i][1]) : NO_CARD;
+        }
+        for (int i = 0; i < board.length; i++) {
+            board[i] = card(cards[i]);
+        }
+        finished = true;
+    }
+    
+    private static int card(Card card) {
+        return card == null ? NO_CARD : Cards.index(card);
+    }
+    
+    public boolean isFinished() {
+        return finished;
+    }
+    
+    public String getTableId() {
+        return tableId;
+    }
+    
+    public long getHandNumber() {
+        return handNumber;
+    }
+    
+    public long getStartMillis() {
+        return startMillis;
+    }
+    
+    public int getDealer() {
+        return dealer;
+    }
+    
+    public int getSmallBlind() {
+        return smallBlind;
+    }
+    
+    public int getBigBlind() {
+        return bigBlind;
+    }
+    
+    public int getLeftoverIn() {
+        return leftoverIn;
+    }
+    
+    public int getLeftoverOut() {
+        return leftoverOut;
+    }
+    
+    public boolean isSeated(int seat) {
+        return (seated & (1 << seat)) != 0;
+    }
+    
+    public boolean isDealtIn(int seat) {
+        return (dealtIn & (1 << seat)) != 0;
+    }
+    
+    /* null if nobody was sitting there at the deal */
+    public String getName(int seat) {
+        return names[seat];
+    }
+    
+    public int getStartChips(int seat) {
+        return startChips[seat];
+    }
+    
+    public int getFinalChips(int seat) {
+        return finalChips[seat];
+    }
+    
+    /* Cards index of one of a seat's two hole cards, Cards.NONE if it wasn't dealt in */
+    public int getHoleCard(int seat, int card) {
+        return toIndex(holeCards[seat * 2 + card]);
+    }
+    
+    /* Cards index, Cards.NONE if it never came */
+    public int getBoardCard(int card) {
+        return toIndex(board[card]);
+    }
+    
+    private static int toIndex(int card) {
+        return card == NO_CARD ? Cards.NONE : card;
+    }
+    
+    public int getActionCount() {
+        return actions;
+    }
+    
+    public int getActionSeat(int action) {
+        return actionSeats[action];
+    }
+    
+    /* an ActionType ordinal, or LEFT */
+    public int getActionType(int action) {
+        return actionTypes[action] & 0xFF;
+    }
+    
+    public int getActionAmount(int action) {
+        return actionAmounts[action];
+    }
+    
+    public int getPotCount() {
+        return pots;
+    }
+    
+    public int getPotAmount(int pot) {
+        return potAmounts[pot];
+    }
+    
+    /* seat mask of who won the pot */
+    public int getPotWinners(int pot) {
+        return potWinners[pot];
+    }
+    
+    public int getPotShare(int pot) {
+        return potShares[pot];
+    }
+    
+    /*
+     * throws BufferOverflowException if it doesn't fit, IllegalArgumentException if the table id or
+     * a name is longer than MAX_STRING_BYTES
+     */
+    public void writeTo(ByteBuffer out) {
+        out.put((byte) VERSION);
+        putString(out, tableId);
+        out.putLong(handNumber);
+        out.putLong(startMillis);
+        out.put((byte) dealer);
+        out.putInt(smallBlind);
+        out.putInt(bigBlind);
+        out.putInt(leftoverIn);
+        out.putInt(leftoverOut);
+        out.putShort((short) seated);
+        out.putShort((short) dealtIn);
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            if ((seated & (1 << i)) != 0) {
+                putString(out, names[i]);
+                out.putInt(startChips[i]);
+                out.putInt(finalChips[i]);
+            }
+        }
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            if ((dealtIn & (1 << i)) != 0) {
+                out.put((byte) holeCards[i * 2]);
+                out.put((byte) holeCards[i * 2 + 1]);
+            }
+        }
+        for (int card : board) {
+            out.put((byte) card);
+        }
+        out.putShort((short) actions);
+        for (int i = 0; i < actions; i++) {
+            out.put(actionSeats[i]);
+            out.put(actionTypes[i]);
+            out.putInt(actionAmounts[i]);
+        }
+        out.put((byte) pots);
+        for (int i = 0; i < pots; i++) {
+            out.putInt(potAmounts[i]);
+            out.putShort((short) potWinners[i]);
+            out.putInt(potShares[i]);
+        }
+    }
+    
+    /* read back what writeTo wrote */
+    public static HandRecord readFrom(ByteBuffer in) {
+        int version = in.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown hand record version " + version);
+        }
+        HandRecord hand = new HandRecord(getString(in), in.getLong(), in.getLong());
+        hand.dealer = in.get();
+        hand.smallBlind = in.getInt();
+        hand.bigBlind = in.getInt();
+        hand.leftoverIn = in.getInt();
+        hand.leftoverOut = in.getInt();
+        hand.seated = in.getShort() & 0xFFFF;
+        hand.dealtIn = in.getShort() & 0xFFFF;
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            if (hand.isSeated(i)) {
+                hand.names[i] = getString(in);
+                hand.startChips[i] = in.getInt();
+                hand.finalChips[i] = in.getInt();
+            }
+        }
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            boolean dealt = hand.isDealtIn(i);
+            hand.holeCards[i * 2] = dealt ? in.get() & 0xFF : NO_CARD;
+            hand.holeCards[i * 2 + 1] = dealt ? in.get() & 0xFF : NO_CARD;
+        }
+        for (int i = 0; i < hand.board.length; i++) {
+            hand.board[i] = in.get() & 0xFF;
+        }
+        int actions = in.getShort() & 0xFFFF;
+        for (int i = 0; i < actions; i++) {
+            hand.addAction(in.get(), in.get() & 0xFF, in.getInt());
+        }
+        int pots = in.get() & 0xFF;
+        for (int i = 0; i < pots; i++) {
+            hand.pot(in.getInt(), in.getShort() & 0xFFFF, in.getInt());
+        }
+        hand.finished = true;
+        return hand;
+    }
+    
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /* longer than the length can say would be read back as something else, with the CRC still good */
+    private static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Can't record a string of " + bytes.length + " bytes");
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+}
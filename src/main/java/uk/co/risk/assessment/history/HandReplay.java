@@ -0,0 +1,115 @@
+package uk.co.risk.assessment.history;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a hand history, a segment or a whole directory of them, and reports any hand that
+ * doesn't come out as recorded. Hands are replayed in batches spread over every core. Exits with 1
+ * if anything differed, so it can be used as a regression check:
+ *
+ * HandReplay <segment or directory> [threads]
+ *
+ */
+public class HandReplay {
+    private static final Logger LOG = LoggerFactory.getLogger(HandReplay.class);
+    
+    private static final int BATCH = 1024;
+    // only the first few differences are worth reading
+    private static final int REPORT = 20;
+    
+    private final HandReplayer replayer = new HandReplayer();
+    private final ExecutorService workers;
+    // batches read ahead of the workers, so memory stays bounded however big the history is
+    private final Semaphore backlog;
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder differed = new LongAdder();
+    private final AtomicInteger reported = new AtomicInteger();
+    
+    public HandReplay(int threads) {
+        workers = Executors.newFixedThreadPool(threads);
+        backlog = new Semaphore(threads * 4);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: HandReplay <segment or directory> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        HandReplay replay = new HandReplay(threads);
+        long start = System.nanoTime();
+        replay.replay(Paths.get(args[0]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        LOG.info("Replayed {} hands in {}s on {} threads, {} hands/s, {} differed", replay.getReplayed(),
+                String.format("%.2f", seconds), threads, Math.round(replay.getReplayed() / seconds),
+                replay.getDiffered());
+        System.exit(replay.getDiffered() == 0 ? 0 : 1);
+    }
+    
+    public void replay(Path path) throws IOException, InterruptedException {
+        List<HandRecord> batch = new ArrayList<>(BATCH);
+        for (Path segment : HandJournalReader.segments(path)) {
+            LOG.info("Replaying {}", segment);
+            HandJournalReader.read(segment, hand -> {
+                batch.add(hand);
+                if (batch.size() == BATCH) {
+                    submit(new ArrayList<>(batch));
+                    batch.clear();
+                }
+            });
+        }
+        submit(batch);
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+    
+    private void submit(List<HandRecord> hands) {
+        backlog.acquireUninterruptibly();
+        workers.execute(() -> {
+            try {
+                for (HandRecord hand : hands) {
+                    check(hand);
+                }
+            } finally {
+                backlog.release();
+            }
+        });
+    }
+    
+    private void check(HandRecord hand) {
+        String difference;
+        try {
+            difference = replayer.replay(hand);
+        } catch (RuntimeException e) {
+            difference = "replay failed: " + e;
+        }
+        replayed.increment();
+        if (difference != null) {
+            differed.increment();
+            if (reported.incrementAndGet() <= REPORT) {
+                LOG.warn("Hand {} on table {} differed: {}", hand.getHandNumber(), hand.getTableId(), difference);
+            }
+        }
+    }
+    
+    public long getReplayed() {
+        return replayed.sum();
+    }
+    
+    public long getDiffered() {
+        return differed.sum();
+    }
+}
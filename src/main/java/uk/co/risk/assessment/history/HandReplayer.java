@@ -0,0 +1,163 @@
+package uk.co.risk.assessment.history;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import uk.co.risk.assessment.dao.PlayerDAO;
+import uk.co.risk.assessment.model.Action;
+import uk.co.risk.assessment.model.ActionType;
+import uk.co.risk.assessment.model.Cards;
+import uk.co.risk.assessment.model.Deck;
+import uk.co.risk.assessment.model.Game;
+import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.model.Table;
+import uk.co.risk.assessment.model.TableState;
+
+/**
+ * Plays a recorded hand again on a fresh Game: the same players in the same seats with the same
+ * chips, a deck stacked to deal the recorded cards, then every recorded action through
+ * handleCommand. The replay is recorded too and compared with the original, pot by pot and seat
+ * by seat, so any change in how the engine settles a hand shows up.
+ *
+ * Stateless, so one replayer can be shared by any number of threads.
+ *
+ */
+public class HandReplayer {
+    
+    private static final ActionType[] TYPES = ActionType.values();
+    
+    /* just the players in the hand being replayed, nothing checked or saved */
+    private static class HandPlayers extends PlayerDAO {
+        private final Map<String, Player> players = new HashMap<>();
+        
+        @Override
+        public Player getPlayer(String name) {
+            return players.get(name);
+        }
+    }
+    
+    /* keeps the one hand the replay plays */
+    private static class Capture implements HandJournal {
+        HandRecord hand;
+        
+        @Override
+        public void append(HandRecord hand) {
+            this.hand = hand;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    /* null if the replay came out the same, otherwise what differed */
+    public String replay(HandRecord recorded) {
+        HandPlayers players = new HandPlayers();
+        Game game = new Game(players, new Random(0));
+        Capture capture = new Capture();
+        game.setHandJournal(capture, recorded.getTableId());
+        game.setDeck(stackedDeck(recorded));
+        game.setLeftover(recorded.getLeftoverIn());
+        Table table = game.getTable();
+        table.setDealer(recorded.getDealer());
+        table.setSmallBlind(recorded.getSmallBlind());
+        table.setBigBlind(recorded.getBigBlind());
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            if (recorded.isSeated(i)) {
+                Player player = new Player(recorded.getName(i));
+                player.setChips(recorded.getStartChips(i));
+                // anyone sat out of the hand was already sat out before it
+                player.setPaused(!recorded.isDealtIn(i));
+                table.getPlayers()[i] = player;
+                players.players.put(player.getName(), player);
+            }
+        }
+        if (recorded.getDealer() < 0 || !recorded.isSeated(recorded.getDealer())) {
+            return "no dealer at seat " + recorded.getDealer();
+        }
+        String dealt = game.handleCommand(recorded.getName(recorded.getDealer()), ActionType.DEAL.getCommand());
+        if (capture.hand == null && game.getTable().getState() == TableState.PREDEAL) {
+            return "couldn't deal: " + dealt;
+        }
+        boolean chipsChanged = false;
+        for (int i = 0; i < recorded.getActionCount(); i++) {
+            int seat = recorded.getActionSeat(i);
+            String name = seat >= 0 && seat < Table.MAX_PLAYERS ? recorded.getName(seat) : null;
+            int type = recorded.getActionType(i);
+            if (name == null) {
+                // someone who sat down during the hand, we don't know who
+                continue;
+            }
+            if (type == HandRecord.LEFT) {
+                game.playerLeft(name);
+            } else if (type < TYPES.length && TYPES[type] != ActionType.SETHAND) {
+                // sethand isn't needed, the deck already deals the cards as they ended up
+                chipsChanged |= TYPES[type] == ActionType.BUYIN || TYPES[type] == ActionType.SETCHIPS;
+                game.handleCommand(name, new Action(TYPES[type], recorded.getActionAmount(i)).toString());
+            }
+        }
+        if (capture.hand == null) {
+            return "hand didn't finish, table left " + game.getTable().getState();
+        }
+        return compare(recorded, capture.hand, chipsChanged);
+    }
+    
+    /* hole cards for each seat dealt in, in the order Game deals them, then the board */
+    private static Deck stackedDeck(HandRecord recorded) {
+        int[] cards = new int[Table.MAX_PLAYERS * 2 + 5];
+        int count = 0;
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            if (recorded.isDealtIn(i)) {
+                cards[count++] = recorded.getHoleCard(i, 0);
+                cards[count++] = recorded.getHoleCard(i, 1);
+            }
+        }
+        for (int i = 0; i < 5 && recorded.getBoardCard(i) != Cards.NONE; i++) {
+            cards[count++] = recorded.getBoardCard(i);
+        }
+        int[] top = new int[count];
+        System.arraycopy(cards, 0, top, 0, count);
+        return Deck.stacked(top);
+    }
+    
+    private static String compare(HandRecord recorded, HandRecord replayed, boolean chipsChanged) {
+        if (recorded.getPotCount() != replayed.getPotCount()) {
+            return "paid " + replayed.getPotCount() + " pots, recorded " + recorded.getPotCount();
+        }
+        for (int i = 0; i < recorded.getPotCount(); i++) {
+            if (recorded.getPotAmount(i) != replayed.getPotAmount(i)
+                    || recorded.getPotWinners(i) != replayed.getPotWinners(i)
+                    || recorded.getPotShare(i) != replayed.getPotShare(i)) {
+                return "pot " + (i + 1) + " was " + describePot(replayed, i) + ", recorded " + describePot(recorded, i);
+            }
+        }
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            if (recorded.isSeated(i) && recorded.getFinalChips(i) != replayed.getFinalChips(i)) {
+                return recorded.getName(i) + " finished with " + replayed.getFinalChips(i) + " chips, recorded "
+                        + recorded.getFinalChips(i);
+            }
+        }
+        if (recorded.getLeftoverOut() != replayed.getLeftoverOut()) {
+            return "left over " + replayed.getLeftoverOut() + ", recorded " + recorded.getLeftoverOut();
+        }
+        // nothing should come from nowhere, unless chips were bought or set during the hand
+        long in = replayed.getLeftoverIn();
+        long out = replayed.getLeftoverOut();
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            if (replayed.isSeated(i)) {
+                in += replayed.getStartChips(i);
+                out += replayed.getFinalChips(i);
+            }
+        }
+        if (in != out && !chipsChanged) {
+            return in + " chips went in but " + out + " came out";
+        }
+        return null;
+    }
+    
+    private static String describePot(HandRecord hand, int pot) {
+        return hand.getPotAmount(pot) + " to seats " + Integer.toBinaryString(hand.getPotWinners(pot)) + " at "
+                + hand.getPotShare(pot) + " each";
+    }
+}
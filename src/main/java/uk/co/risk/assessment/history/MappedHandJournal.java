@@ -0,0 +1,233 @@
+package uk.co.risk.assessment.history;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hand history kept in a directory of fixed size, memory-mapped segment files, hands-00000001.log
+ * and so on. Tables just queue finished hands; one thread encodes them, copies them into the
+ * current segment and syncs it at most every FLUSH_MILLIS, so a crash loses no more than that.
+ * When a segment is full the next one is started, as is a new one on every startup, so a
+ * segment is only ever written by one run.
+ *
+ * A segment starts with MAGIC and HandRecord.VERSION as ints, then each hand is its length, a
+ * CRC32 of it and the HandRecord bytes. Segments are created full size and the space after the
+ * last hand is left as zeros, so a reader stops at a zero length, or at a bad CRC if a crash
+ * tore the last write.
+ *
+ * If hands come faster than they can be written the queue fills and further hands are dropped
+ * and counted, tables never wait. Set from the environment:
+ *
+ * HAND_HISTORY_DIR - where to keep the segments, without it no history is kept
+ * HAND_HISTORY_SEGMENT_MB - size of each segment (default 64)
+ *
+ */
+public class MappedHandJournal implements HandJournal {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedHandJournal.class);
+    
+    public static final int MAGIC = 0x48414e44;
+    public static final int HEADER_BYTES = 8;
+    private static final long FLUSH_MILLIS = 100;
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int BATCH = 1024;
+    
+    private final Path directory;
+    private final int segmentBytes;
+    private final BlockingQueue<HandRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+    
+    // only used by the writer thread from here down
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private boolean dirty;
+    private long lastFlush;
+    private long written;
+    
+    public MappedHandJournal(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        segmentNumber = lastSegment(directory);
+        nextSegment();
+        writer = new Thread(this::run, "hand-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    /* null if no directory is set */
+    public static MappedHandJournal fromEnvironment() throws IOException {
+        String directory = System.getenv("HAND_HISTORY_DIR");
+        if (directory == null || directory.trim().isEmpty()) {
+            return null;
+        }
+        String size = System.getenv("HAND_HISTORY_SEGMENT_MB");
+        int megabytes;
+        try {
+            megabytes = size == null || size.trim().isEmpty() ? 64 : Integer.parseInt(size.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("HAND_HISTORY_SEGMENT_MB must be a whole number: " + size);
+        }
+        if (megabytes < 1 || megabytes > 1024) {
+            throw new IllegalArgumentException("HAND_HISTORY_SEGMENT_MB must be from 1 to 1024");
+        }
+        LOG.info("Keeping hand history in {}", directory);
+        return new MappedHandJournal(Paths.get(directory.trim()), megabytes << 20);
+    }
+    
+    public static String segmentName(long number) {
+        return String.format("hands-%08d.log", number);
+    }
+    
+    /* highest segment number already in the directory, 0 if none */
+    private static long lastSegment(Path directory) throws IOException {
+        long last = 0;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "hands-*.log")) {
+            for (Path segment : segments) {
+                String name = segment.getFileName().toString();
+                try {
+                    last = Math.max(last, Long.parseLong(name.substring(6, name.length() - 4)));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return last;
+    }
+    
+    @Override
+    public void append(HandRecord hand) {
+        if (!queue.offer(hand)) {
+            dropped.increment();
+        }
+    }
+    
+    public long getDropped() {
+        return dropped.sum();
+    }
+    
+    private void run() {
+        List<HandRecord> batch = new ArrayList<>(BATCH);
+        long lastDropped = 0;
+        while (running || !queue.isEmpty()) {
+            try {
+                HandRecord first = queue.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH - 1);
+                    for (HandRecord hand : batch) {
+                        write(hand);
+                    }
+                    batch.clear();
+                }
+                long now = System.currentTimeMillis();
+                if (dirty && now - lastFlush >= FLUSH_MILLIS) {
+                    segment.force();
+                    dirty = false;
+                    lastFlush = now;
+                }
+                long droppedNow = dropped.sum();
+                if (droppedNow != lastDropped) {
+                    LOG.warn("Hand history falling behind, {} hands dropped so far", droppedNow);
+                    lastDropped = droppedNow;
+                }
+            } catch (InterruptedException e) {
+                // closing, carry on until the queue is empty
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Failed to write hand history, {} hands lost", batch.size(), e);
+                batch.clear();
+            }
+        }
+        closeSegment();
+        LOG.info("Hand history closed, {} hands written", written);
+    }
+    
+    private void write(HandRecord hand) throws IOException {
+        scratch.clear();
+        while (true) {
+            try {
+                hand.writeTo(scratch);
+                break;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Hand {} on table {} can't be recorded, not kept: {}", hand.getHandNumber(),
+                        hand.getTableId().substring(0, Math.min(32, hand.getTableId().length())), e.getMessage());
+                return;
+            }
+        }
+        scratch.flip();
+        int length = scratch.remaining();
+        if (HEADER_BYTES + 8 + length > segmentBytes) {
+            LOG.warn("Hand {} on table {} too big for a segment, not kept", hand.getHandNumber(), hand.getTableId());
+            return;
+        }
+        // keep four bytes of zeros after the last hand so there is always an end to find
+        if (segment.remaining() < 8 + length + 4) {
+            closeSegment();
+            nextSegment();
+        }
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        segment.putInt(length);
+        segment.putInt((int) crc.getValue());
+        segment.put(scratch);
+        dirty = true;
+        written++;
+    }
+    
+    private void nextSegment() throws IOException {
+        segmentNumber++;
+        Path path = directory.resolve(segmentName(segmentNumber));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.putInt(MAGIC);
+        segment.putInt(HandRecord.VERSION);
+        dirty = true;
+    }
+    
+    private void closeSegment() {
+        try {
+            segment.force();
+            dirty = false;
+            // the mapping itself goes when it is garbage collected
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to close hand history segment {}", segmentName(segmentNumber), e);
+        }
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
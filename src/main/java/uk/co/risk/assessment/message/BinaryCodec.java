@@ -0,0 +1,487 @@
+package uk.co.risk.assessment.message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import uk.co.risk.assessment.model.Action;
+import uk.co.risk.assessment.model.ActionType;
+import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.Cards;
+import uk.co.risk.assessment.model.CommandResult;
+import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.model.Rejection;
+import uk.co.risk.assessment.model.Table;
+import uk.co.risk.assessment.model.TableState;
+
+/**
+ * Compact binary encoding of a Message, for clients that ask for it with ?protocol=binary when they
+ * connect. Carries the same fields as the JSON.
+ *
+ * A frame is the MessageType ordinal as one byte, then a varint of flags saying which fields follow,
+ * then those fields in flag order. Numbers are zigzag varints, strings a varint byte length then
+ * UTF-8, cards one byte each (the Cards index, 255 for none), and a card array a varint count then
+ * the cards. The player's own cards always come last, so a broadcast can share everything before
+ * them.
+ *
+ * A table is its state ordinal, dealer, next to bet, current bet, last raise, big blind, small blind,
+ * minimum buyin, pot level, maximum bet and number of pots, then the five board cards, then a two
+ * byte bitset of occupied seats followed by each occupied seat's player, then a count of pots (any
+ * empty ones at the end are left off) and each pot. A player is name, chips, buy ins, a flags byte
+ * (checked/called, folded, paused, all in), then a count of bets (trailing zeros left off) and the
+ * bets. A pot is its amount, bet limit and a two byte bitset of the seats in it.
+ *
+ * An action is its ActionType ordinal as a byte, the amount, and the text as a string or a zero
+ * byte for none (any other length is one more than the byte count). An outcome is the ActionType
+ * ordinal, a byte of 1 if accepted, and the Rejection ordinal plus one (zero for none); its text is
+ * the message data.
+ */
+public class BinaryCodec {
+    
+    private static final int DATA = 1;
+    private static final int PLAYER_NAME = 1 << 1;
+    private static final int TABLE = 1 << 2;
+    private static final int TABLE_ID = 1 << 3;
+    private static final int NEW_PLAYER = 1 << 4;
+    private static final int DELTAS = 1 << 5;
+    private static final int SEQ = 1 << 6;
+    private static final int DELTA = 1 << 7;
+    private static final int ACTION = 1 << 8;
+    private static final int OUTCOME = 1 << 9;
+    private static final int CARDS = 1 << 10;
+    
+    private static final int NO_CARD = 0xFF;
+    
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final TableState[] STATES = TableState.values();
+    private static final ActionType[] ACTION_TYPES = ActionType.values();
+    private static final Rejection[] REJECTIONS = Rejection.values();
+    
+    // only used for the JSON of a TABLE_DELTA's delta
+    private final ObjectMapper mapper;
+    
+    public BinaryCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+    
+    public byte[] encode(Message message) throws IOException {
+        Output out = new Output();
+        writeShared(out, message, message.getCards() != null);
+        if (message.getCards() != null) {
+            writeCards(out, message.getCards());
+        }
+        return out.toByteArray();
+    }
+    
+    /* everything but the player's own cards, for a broadcast to finish off with withCards */
+    public byte[] shared(Message message) throws IOException {
+        Output out = new Output();
+        writeShared(out, message, true);
+        return out.toByteArray();
+    }
+    
+    public byte[] withCards(byte[] shared, Card[] cards) {
+        Output out = new Output(shared.length + 8);
+        out.write(shared);
+        writeCards(out, cards == null ? new Card[0] : cards);
+        return out.toByteArray();
+    }
+    
+    private void writeShared(Output out, Message message, boolean withCards) throws IOException {
+        int flags = (message.getData() != null ? DATA : 0)
+                | (message.getPlayerName() != null ? PLAYER_NAME : 0)
+                | (message.getTable() != null ? TABLE : 0)
+                | (message.getTableId() != null ? TABLE_ID : 0)
+                | (message.getNewPlayer() != null ? NEW_PLAYER : 0)
+                | (Boolean.TRUE.equals(message.getDeltas()) ? DELTAS : 0)
+                | (message.getSeq() != null ? SEQ : 0)
+                | (message.getDelta() != null ? DELTA : 0)
+                | (message.getAction() != null ? ACTION : 0)
+                | (message.getOutcome() != null ? OUTCOME : 0)
+                | (withCards ? CARDS : 0);
+        out.writeByte(message.getType().ordinal());
+        out.writeVarint(flags);
+        if (message.getData() != null) {
+            out.writeString(message.getData());
+        }
+        if (message.getPlayerName() != null) {
+            out.writeString(message.getPlayerName());
+        }
+        if (message.getTable() != null) {
+            writeTable(out, message.getTable());
+        }
+        if (message.getTableId() != null) {
+            out.writeString(message.getTableId());
+        }
+        if (message.getNewPlayer() != null) {
+            out.writeString(message.getNewPlayer().getName());
+            out.writeString(message.getNewPlayer().getPassword());
+        }
+        if (message.getSeq() != null) {
+            out.writeVarlong(zigzag(message.getSeq()));
+        }
+        if (message.getDelta() != null) {
+            out.writeString(mapper.writeValueAsString(message.getDelta()));
+        }
+        if (message.getAction() != null) {
+            Action action = message.getAction();
+            out.writeByte((action.getType() == null ? ActionType.UNKNOWN : action.getType()).ordinal());
+            out.writeInt(action.getAmount());
+            if (action.getText() == null) {
+                out.writeVarint(0);
+            } else {
+                byte[] utf8 = action.getText().getBytes(StandardCharsets.UTF_8);
+                out.writeVarint(utf8.length + 1);
+                out.write(utf8);
+            }
+        }
+        if (message.getOutcome() != null) {
+            CommandResult outcome = message.getOutcome();
+            out.writeByte(outcome.getAction().ordinal());
+            out.writeByte(outcome.isAccepted() ? 1 : 0);
+            out.writeByte(outcome.getReason() == null ? 0 : outcome.getReason().ordinal() + 1);
+        }
+    }
+    
+    private void writeTable(Output out, Table table) {
+        out.writeByte(table.getState().ordinal());
+        out.writeInt(table.getDealer());
+        out.writeInt(table.getNextToBet());
+        out.writeInt(table.getCurrentBet());
+        out.writeInt(table.getLastRaise());
+        out.writeInt(table.getBigBlind());
+        out.writeInt(table.getSmallBlind());
+        out.writeInt(table.getMinimumBuyin());
+        out.writeInt(table.getPotLevel());
+        out.writeInt(table.getMaximumBet());
+        out.writeInt(table.getNumPots());
+        Card[] board = table.getCards();
+        for (int i = 0; i < board.length; i++) {
+            out.writeByte(cardByte(board[i]));
+        }
+        Player[] players = table.getPlayers();
+        int seats = 0;
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] != null) {
+                seats |= 1 << i;
+            }
+        }
+        out.writeShort(seats);
+        for (int i = 0; i < players.length; i++) {
+            if (players[i] != null) {
+                writePlayer(out, players[i]);
+            }
+        }
+        Table.Pot[] pots = table.getPots();
+        int count = pots.length;
+        while (count > 0 && isEmpty(pots[count - 1])) {
+            count--;
+        }
+        out.writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(pots[i].getPot());
+            out.writeInt(pots[i].getBetLimit());
+            out.writeShort(bits(pots[i].getPlayers()));
+        }
+    }
+    
+    private void writePlayer(Output out, Player player) {
+        out.writeString(player.getName());
+        out.writeInt(player.getChips());
+        out.writeInt(player.getBuyIns());
+        out.writeByte((player.isCheckedCalled() ? 1 : 0) | (player.isFolded() ? 2 : 0)
+                | (player.isPaused() ? 4 : 0) | (player.isAllIn() ? 8 : 0));
+        int[] bets = player.getBets();
+        int count = bets.length;
+        while (count > 0 && bets[count - 1] == 0) {
+            count--;
+        }
+        out.writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(bets[i]);
+        }
+    }
+    
+    private static void writeCards(Output out, Card[] cards) {
+        out.writeVarint(cards.length);
+        for (int i = 0; i < cards.length; i++) {
+            out.writeByte(cardByte(cards[i]));
+        }
+    }
+    
+    public Message decode(ByteBuffer in) throws IOException {
+        try {
+            int type = in.get() & 0xFF;
+            if (type >= TYPES.length) {
+                throw new IOException("Unknown message type " + type);
+            }
+            Message message = new Message(TYPES[type]);
+            int flags = (int) readVarlong(in);
+            if ((flags & DATA) != 0) {
+                message.setData(readString(in));
+            }
+            if ((flags & PLAYER_NAME) != 0) {
+                message.setPlayerName(readString(in));
+            }
+            if ((flags & TABLE) != 0) {
+                message.setTable(readTable(in));
+            }
+            if ((flags & TABLE_ID) != 0) {
+                message.setTableId(readString(in));
+            }
+            if ((flags & NEW_PLAYER) != 0) {
+                NewPlayerMessage newPlayer = new NewPlayerMessage();
+                newPlayer.setName(readString(in));
+                newPlayer.setPassword(readString(in));
+                message.setNewPlayer(newPlayer);
+            }
+            if ((flags & DELTAS) != 0) {
+                message.setDeltas(Boolean.TRUE);
+            }
+            if ((flags & SEQ) != 0) {
+                message.setSeq(unzigzag(readVarlong(in)));
+            }
+            if ((flags & DELTA) != 0) {
+                message.setDelta(mapper.readTree(readString(in)));
+            }
+            if ((flags & ACTION) != 0) {
+                Action action = new Action(ACTION_TYPES[readOrdinal(in, ACTION_TYPES.length)], readInt(in));
+                int length = readLength(in, in.remaining() + 1);
+                if (length > 0) {
+                    byte[] utf8 = new byte[length - 1];
+                    in.get(utf8);
+                    action.setText(new String(utf8, StandardCharsets.UTF_8));
+                }
+                message.setAction(action);
+            }
+            if ((flags & OUTCOME) != 0) {
+                CommandResult outcome = new CommandResult();
+                outcome.setAction(ACTION_TYPES[readOrdinal(in, ACTION_TYPES.length)]);
+                outcome.setAccepted(in.get() == 1);
+                int reason = readOrdinal(in, REJECTIONS.length + 1);
+                outcome.setReason(reason == 0 ? null : REJECTIONS[reason - 1]);
+                outcome.setText(message.getData());
+                message.setOutcome(outcome);
+            }
+            if ((flags & CARDS) != 0) {
+                message.setCards(readCards(in));
+            }
+            return message;
+        } catch (RuntimeException e) {
+            // whatever a client sends, it's their message that's wrong, not the server
+            throw new IOException("Malformed binary message", e);
+        }
+    }
+    
+    private static Table readTable(ByteBuffer in) throws IOException {
+        Table table = new Table();
+        int state = in.get() & 0xFF;
+        if (state >= STATES.length) {
+            throw new IOException("Unknown table state " + state);
+        }
+        table.setState(STATES[state]);
+        table.setDealer(readInt(in));
+        table.setNextToBet(readInt(in));
+        table.setCurrentBet(readInt(in));
+        table.setLastRaise(readInt(in));
+        table.setBigBlind(readInt(in));
+        table.setSmallBlind(readInt(in));
+        table.setMinimumBuyin(readInt(in));
+        table.setPotLevel(readInt(in));
+        table.setMaximumBet(readInt(in));
+        table.setNumPots(readInt(in));
+        Card[] board = table.getCards();
+        for (int i = 0; i < board.length; i++) {
+            board[i] = readCard(in);
+        }
+        int seats = in.getShort() & 0xFFFF;
+        Player[] players = table.getPlayers();
+        for (int i = 0; i < players.length; i++) {
+            if ((seats & (1 << i)) != 0) {
+                players[i] = readPlayer(in);
+            }
+        }
+        Table.Pot[] pots = table.getPots();
+        int count = readLength(in, pots.length);
+        for (int i = 0; i < count; i++) {
+            pots[i].setPot(readInt(in));
+            pots[i].setBetLimit(readInt(in));
+            int inPot = in.getShort() & 0xFFFF;
+            boolean[] potPlayers = pots[i].getPlayers();
+            for (int seat = 0; seat < potPlayers.length; seat++) {
+                potPlayers[seat] = (inPot & (1 << seat)) != 0;
+            }
+        }
+        return table;
+    }
+    
+    private static Player readPlayer(ByteBuffer in) throws IOException {
+        Player player = new Player(readString(in));
+        player.setChips(readInt(in));
+        player.setBuyIns(readInt(in));
+        int flags = in.get();
+        player.setCheckedCalled((flags & 1) != 0);
+        player.setFolded((flags & 2) != 0);
+        player.setPaused((flags & 4) != 0);
+        player.setAllIn((flags & 8) != 0);
+        int[] bets = player.getBets();
+        int count = readLength(in, bets.length);
+        for (int i = 0; i < count; i++) {
+            bets[i] = readInt(in);
+        }
+        return player;
+    }
+    
+    private static int readOrdinal(ByteBuffer in, int count) throws IOException {
+        int ordinal = in.get() & 0xFF;
+        if (ordinal >= count) {
+            throw new IOException("Unknown ordinal " + ordinal);
+        }
+        return ordinal;
+    }
+    
+    private static Card[] readCards(ByteBuffer in) throws IOException {
+        Card[] cards = new Card[readLength(in, Cards.DECK_SIZE)];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = readCard(in);
+        }
+        return cards;
+    }
+    
+    private static int cardByte(Card card) {
+        return card == null ? NO_CARD : Cards.index(card);
+    }
+    
+    private static Card readCard(ByteBuffer in) throws IOException {
+        int index = in.get() & 0xFF;
+        if (index == NO_CARD) {
+            return null;
+        } else if (index >= Cards.DECK_SIZE) {
+            throw new IOException("Bad card " + index);
+        }
+        return Cards.toCard(index);
+    }
+    
+    private static boolean isEmpty(Table.Pot pot) {
+        return pot.getPot() == 0 && pot.getBetLimit() == 0 && bits(pot.getPlayers()) == 0;
+    }
+    
+    private static int bits(boolean[] seats) {
+        int result = 0;
+        for (int i = 0; i < seats.length; i++) {
+            if (seats[i]) {
+                result |= 1 << i;
+            }
+        }
+        return result;
+    }
+    
+    private static String readString(ByteBuffer in) throws IOException {
+        byte[] utf8 = new byte[readLength(in, in.remaining())];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+    
+    private static int readInt(ByteBuffer in) throws IOException {
+        long value = unzigzag(readVarlong(in));
+        if (value != (int) value) {
+            throw new IOException("Number out of range " + value);
+        }
+        return (int) value;
+    }
+    
+    private static int readLength(ByteBuffer in, int max) throws IOException {
+        long length = readVarlong(in);
+        if (length < 0 || length > max) {
+            throw new IOException("Length " + length + " not between 0 and " + max);
+        }
+        return (int) length;
+    }
+    
+    private static long readVarlong(ByteBuffer in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    /* growable byte array, cheaper than ByteArrayOutputStream as nothing is synchronized */
+    private static class Output {
+        private byte[] bytes;
+        private int size;
+        
+        Output() {
+            this(256);
+        }
+        
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+        
+        void writeByte(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+        
+        void writeShort(int s) {
+            ensure(2);
+            bytes[size++] = (byte) (s >>> 8);
+            bytes[size++] = (byte) s;
+        }
+        
+        void write(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+        
+        void writeInt(int value) {
+            writeVarlong(zigzag(value));
+        }
+        
+        void writeVarint(int value) {
+            writeVarlong(value & 0xFFFFFFFFL);
+        }
+        
+        void writeVarlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        
+        void writeString(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            write(utf8);
+        }
+        
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
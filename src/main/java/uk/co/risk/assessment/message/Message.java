@@ -1,8 +1,12 @@
 package uk.co.risk.assessment.message;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
 
+import uk.co.risk.assessment.model.Action;
 import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.CommandResult;
 import uk.co.risk.assessment.model.Table;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -17,6 +21,24 @@ public class Message {
     private String playerName;
     // this player's cards
     private Card[] cards;
+    // which table a join is for, left out of outgoing messages unless set so older clients see no change
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String tableId;
+    // set on joining by clients that want TABLE_DELTA updates rather than the whole table each time
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean deltas;
+    // for delta clients, the sequence number of the table state this message brings them up to
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long seq;
+    // for TABLE_DELTA, what has changed in the table since the previous sequence number
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private JsonNode delta;
+    // a command as a typed action, rather than as text in data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Action action;
+    // for updates following a command, what came of it; data still has the text for people to read
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private CommandResult outcome;
 
     public Message() {
     }
@@ -72,6 +94,54 @@ public class Message {
     public void setCards(Card[] cards) {
         this.cards = cards;
     }
+
+    public String getTableId() {
+        return tableId;
+    }
+
+    public void setTableId(String tableId) {
+        this.tableId = tableId;
+    }
+
+    public Boolean getDeltas() {
+        return deltas;
+    }
+
+    public void setDeltas(Boolean deltas) {
+        this.deltas = deltas;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public JsonNode getDelta() {
+        return delta;
+    }
+
+    public void setDelta(JsonNode delta) {
+        this.delta = delta;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public CommandResult getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(CommandResult outcome) {
+        this.outcome = outcome;
+    }
     
     
  
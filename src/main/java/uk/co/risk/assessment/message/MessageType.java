@@ -1,5 +1,7 @@
 package uk.co.risk.assessment.message;
 
 public enum MessageType {
-    PLAYER_JOINED, TEXT_MESSAGE, PLAYER_LEFT, PLAYER_JOINED_ACK, PLAYER_OVERRIDDEN, PLAYER_BADPASSWORD
+    PLAYER_JOINED, TEXT_MESSAGE, PLAYER_LEFT, PLAYER_JOINED_ACK, PLAYER_OVERRIDDEN, PLAYER_BADPASSWORD,
+    // for clients that asked for deltas: changes since the previous update, and asking for the full table again
+    TABLE_DELTA, SNAPSHOT_REQUEST
 }
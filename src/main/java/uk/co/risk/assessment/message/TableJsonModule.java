@@ -0,0 +1,206 @@
+package uk.co.risk.assessment.message;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.model.Table;
+
+/**
+ * Hand written serializers for the table and everything in it, which go out with every update.
+ * They write straight to the generator rather than Jackson finding and calling every getter by
+ * reflection, and leave out what carries no information:
+ *
+ * - empty pots after the last one in use (pot numbers still line up, as only trailing ones go)
+ * - zero bets after a player's last bet
+ * - seats after the last one in a pot's players
+ *
+ * Everything else is as before: every seat is still there, null if empty, so seat numbers line up,
+ * and flags are still true/false. Register on the ObjectMapper with registerModule.
+ */
+public class TableJsonModule extends SimpleModule {
+    private static final long serialVersionUID = 1L;
+    
+    public TableJsonModule() {
+        super("TableJsonModule");
+        addSerializer(Table.class, new TableSerializer());
+        addSerializer(Player.class, new PlayerSerializer());
+        addSerializer(Table.Pot.class, new PotSerializer());
+        addSerializer(Card.class, new CardSerializer());
+    }
+    
+    private static class TableSerializer extends StdSerializer<Table> {
+        private static final long serialVersionUID = 1L;
+        
+        TableSerializer() {
+            super(Table.class);
+        }
+        
+        @Override
+        public void serialize(Table table, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeFieldName("players");
+            gen.writeStartArray();
+            for (Player player : table.getPlayers()) {
+                if (player == null) {
+                    gen.writeNull();
+                } else {
+                    PlayerSerializer.write(player, gen);
+                }
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("dealer", table.getDealer());
+            gen.writeNumberField("nextToBet", table.getNextToBet());
+            gen.writeNumberField("currentBet", table.getCurrentBet());
+            gen.writeNumberField("lastRaise", table.getLastRaise());
+            gen.writeNumberField("bigBlind", table.getBigBlind());
+            gen.writeNumberField("smallBlind", table.getSmallBlind());
+            gen.writeNumberField("minimumBuyin", table.getMinimumBuyin());
+            gen.writeFieldName("cards");
+            gen.writeStartArray();
+            for (Card card : table.getCards()) {
+                CardSerializer.write(card, gen);
+            }
+            gen.writeEndArray();
+            gen.writeFieldName("state");
+            if (table.getState() == null) {
+                gen.writeNull();
+            } else {
+                gen.writeString(table.getState().name());
+            }
+            gen.writeNumberField("numPots", table.getNumPots());
+            gen.writeNumberField("potLevel", table.getPotLevel());
+            gen.writeNumberField("maximumBet", table.getMaximumBet());
+            gen.writeFieldName("pots");
+            gen.writeStartArray();
+            Table.Pot[] pots = table.getPots();
+            int count = pots.length;
+            while (count > 0 && isEmpty(pots[count - 1])) {
+                count--;
+            }
+            for (int i = 0; i < count; i++) {
+                PotSerializer.write(pots[i], gen);
+            }
+            gen.writeEndArray();
+            gen.writeNumberField("minimumRaise", table.getMinimumRaise());
+            gen.writeEndObject();
+        }
+        
+        private static boolean isEmpty(Table.Pot pot) {
+            return pot == null || (pot.getPot() == 0 && pot.getBetLimit() == 0 && inPot(pot.getPlayers()) == 0);
+        }
+    }
+    
+    private static class PlayerSerializer extends StdSerializer<Player> {
+        private static final long serialVersionUID = 1L;
+        
+        PlayerSerializer() {
+            super(Player.class);
+        }
+        
+        @Override
+        public void serialize(Player player, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            write(player, gen);
+        }
+        
+        static void write(Player player, JsonGenerator gen) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("name", player.getName());
+            gen.writeNumberField("chips", player.getChips());
+            gen.writeNumberField("buyIns", player.getBuyIns());
+            gen.writeFieldName("bets");
+            int[] bets = player.getBets();
+            if (bets == null) {
+                gen.writeNull();
+            } else {
+                int count = bets.length;
+                while (count > 0 && bets[count - 1] == 0) {
+                    count--;
+                }
+                gen.writeArray(bets, 0, count);
+            }
+            gen.writeBooleanField("checkedCalled", player.isCheckedCalled());
+            gen.writeBooleanField("folded", player.isFolded());
+            gen.writeBooleanField("paused", player.isPaused());
+            gen.writeBooleanField("allIn", player.isAllIn());
+            gen.writeEndObject();
+        }
+    }
+    
+    private static class PotSerializer extends StdSerializer<Table.Pot> {
+        private static final long serialVersionUID = 1L;
+        
+        PotSerializer() {
+            super(Table.Pot.class);
+        }
+        
+        @Override
+        public void serialize(Table.Pot pot, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            write(pot, gen);
+        }
+        
+        static void write(Table.Pot pot, JsonGenerator gen) throws IOException {
+            if (pot == null) {
+                gen.writeNull();
+                return;
+            }
+            gen.writeStartObject();
+            gen.writeNumberField("pot", pot.getPot());
+            gen.writeNumberField("betLimit", pot.getBetLimit());
+            gen.writeFieldName("players");
+            boolean[] players = pot.getPlayers();
+            if (players == null) {
+                gen.writeNull();
+            } else {
+                // up to the last seat in the pot
+                int count = 32 - Integer.numberOfLeadingZeros(inPot(players));
+                gen.writeStartArray();
+                for (int i = 0; i < count; i++) {
+                    gen.writeBoolean(players[i]);
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndObject();
+        }
+    }
+    
+    private static class CardSerializer extends StdSerializer<Card> {
+        private static final long serialVersionUID = 1L;
+        
+        CardSerializer() {
+            super(Card.class);
+        }
+        
+        @Override
+        public void serialize(Card card, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            write(card, gen);
+        }
+        
+        static void write(Card card, JsonGenerator gen) throws IOException {
+            if (card == null) {
+                gen.writeNull();
+                return;
+            }
+            gen.writeStartObject();
+            gen.writeNumberField("value", card.getValue());
+            gen.writeStringField("suit", card.getSuit().name());
+            gen.writeEndObject();
+        }
+    }
+    
+    /* bit per seat in the pot */
+    private static int inPot(boolean[] players) {
+        int result = 0;
+        for (int i = 0; players != null && i < players.length; i++) {
+            if (players[i]) {
+                result |= 1 << i;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+package uk.co.risk.assessment.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up. Backed by a LongAdder, so threads counting at once each add to their
+ * own cell and never wait on one another.
+ *
+ */
+public class Counter extends Metric {
+    
+    private final LongAdder count = new LongAdder();
+    
+    Counter(String name, String help) {
+        super(name, help, "counter");
+    }
+    
+    public void increment() {
+        count.increment();
+    }
+    
+    public void add(long amount) {
+        count.add(amount);
+    }
+    
+    public long get() {
+        return count.sum();
+    }
+    
+    @Override
+    protected void writeSamples(StringBuilder out) {
+        sample(out, getName(), "", get());
+    }
+}
@@ -0,0 +1,48 @@
+package uk.co.risk.assessment.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter for each value of an enum, such as messages by MessageType, all under one name with
+ * the value as a label. Values never counted are left out.
+ *
+ */
+public class CounterFamily<E extends Enum<E>> extends Metric {
+    
+    private final E[] values;
+    private final String[] labels;
+    private final LongAdder[] counts;
+    
+    CounterFamily(String name, String help, String label, Class<E> type) {
+        super(name, help, "counter");
+        values = type.getEnumConstants();
+        labels = new String[values.length];
+        counts = new LongAdder[values.length];
+        for (int i = 0; i < values.length; i++) {
+            labels[i] = label + "=\"" + values[i].name() + "\"";
+            counts[i] = new LongAdder();
+        }
+    }
+    
+    public void increment(E value) {
+        counts[value.ordinal()].increment();
+    }
+    
+    public void add(E value, long amount) {
+        counts[value.ordinal()].add(amount);
+    }
+    
+    public long get(E value) {
+        return counts[value.ordinal()].sum();
+    }
+    
+    @Override
+    protected void writeSamples(StringBuilder out) {
+        for (int i = 0; i < values.length; i++) {
+            long count = counts[i].sum();
+            if (count > 0) {
+                sample(out, getName(), labels[i], count);
+            }
+        }
+    }
+}
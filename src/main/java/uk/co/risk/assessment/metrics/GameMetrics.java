@@ -0,0 +1,24 @@
+package uk.co.risk.assessment.metrics;
+
+/**
+ * What the games count, shared by every table.
+ *
+ */
+public class GameMetrics {
+    
+    private final Counter handsDealt;
+    private final Timer showdown;
+    
+    public GameMetrics(MetricsRegistry registry) {
+        handsDealt = registry.counter("poker_hands_dealt_total", "Hands dealt across all tables");
+        showdown = registry.timer("poker_showdown_seconds", "Time to work out the winners of a hand and pay them");
+    }
+    
+    public void handDealt() {
+        handsDealt.increment();
+    }
+    
+    public Timer getShowdown() {
+        return showdown;
+    }
+}
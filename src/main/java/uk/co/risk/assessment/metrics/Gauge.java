@@ -0,0 +1,24 @@
+package uk.co.risk.assessment.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A value read when /metrics is fetched, such as how many tables there are, or a count kept
+ * elsewhere. Whatever supplies it is called on the HTTP thread, so should be quick and safe to
+ * read from there.
+ *
+ */
+public class Gauge extends Metric {
+    
+    private final LongSupplier value;
+    
+    Gauge(String name, String help, String type, LongSupplier value) {
+        super(name, help, type);
+        this.value = value;
+    }
+    
+    @Override
+    protected void writeSamples(StringBuilder out) {
+        sample(out, getName(), "", value.getAsLong());
+    }
+}
@@ -0,0 +1,48 @@
+package uk.co.risk.assessment.metrics;
+
+/**
+ * One metric as it appears on /metrics, in the Prometheus text format: its help and type lines
+ * and then its samples.
+ *
+ */
+public abstract class Metric {
+    
+    private final String name;
+    private final String help;
+    private final String type;
+    
+    protected Metric(String name, String help, String type) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+    }
+    
+    public void write(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        writeSamples(out);
+    }
+    
+    protected abstract void writeSamples(StringBuilder out);
+    
+    public String getName() {
+        return name;
+    }
+    
+    /* a sample line, labels being as they go between the braces or empty for none */
+    static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+    
+    static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+}
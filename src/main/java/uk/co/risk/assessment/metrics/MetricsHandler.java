@@ -0,0 +1,24 @@
+package uk.co.risk.assessment.metrics;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+/**
+ * Serves the registry on the Undertow listener for Prometheus to scrape.
+ *
+ */
+public class MetricsHandler implements HttpHandler {
+    
+    private final MetricsRegistry registry;
+    
+    public MetricsHandler(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public void handleRequest(HttpServerExchange exchange) {
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, MetricsRegistry.CONTENT_TYPE);
+        exchange.getResponseSender().send(registry.scrape());
+    }
+}
@@ -0,0 +1,61 @@
+package uk.co.risk.assessment.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Everything we measure, written out together in the Prometheus text format for /metrics.
+ * Metrics are made here and then recorded to directly by whoever holds them; the registry only
+ * comes into it when they are written out.
+ *
+ */
+public class MetricsRegistry {
+    
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    
+    public Counter counter(String name, String help) {
+        return register(new Counter(name, help));
+    }
+    
+    /* a count kept somewhere else, read when written out */
+    public void counter(String name, String help, LongSupplier value) {
+        register(new Gauge(name, help, "counter", value));
+    }
+    
+    public <E extends Enum<E>> CounterFamily<E> counters(String name, String help, String label, Class<E> type) {
+        return register(new CounterFamily<>(name, help, label, type));
+    }
+    
+    public void gauge(String name, String help, LongSupplier value) {
+        register(new Gauge(name, help, "gauge", value));
+    }
+    
+    public Timer timer(String name, String help) {
+        return register(new Timer(name, help));
+    }
+    
+    public <E extends Enum<E>> TimerFamily<E> timers(String name, String help, String label, Class<E> type) {
+        return register(new TimerFamily<>(name, help, label, type));
+    }
+    
+    private <M extends Metric> M register(M metric) {
+        for (Metric existing : metrics) {
+            if (existing.getName().equals(metric.getName())) {
+                throw new IllegalArgumentException("Metric " + metric.getName() + " already registered");
+            }
+        }
+        metrics.add(metric);
+        return metric;
+    }
+    
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Metric metric : metrics) {
+            metric.write(out);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package uk.co.risk.assessment.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of how long something took, as a Prometheus histogram in seconds. Buckets go from
+ * 10us to 10s in 1, 2.5, 5 steps. Each bucket is a LongAdder, so recording is a scan of a small
+ * array and an uncontended add, with nothing to lock.
+ *
+ */
+public class Timer extends Metric {
+    
+    private static final double[] BOUNDS_SECONDS = { 0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005,
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+    private static final String[] LE = new String[BOUNDS_SECONDS.length + 1];
+    
+    static {
+        for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+            BOUNDS_NANOS[i] = Math.round(BOUNDS_SECONDS[i] * TimeUnit.SECONDS.toNanos(1));
+            LE[i] = "le=\"" + BigDecimal.valueOf(BOUNDS_SECONDS[i]).stripTrailingZeros().toPlainString() + "\"";
+        }
+        LE[BOUNDS_SECONDS.length] = "le=\"+Inf\"";
+    }
+    
+    // counts in each bucket alone, the last for anything slower, added up as they're written
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+    private final String labels;
+    
+    Timer(String name, String help) {
+        this(name, help, "");
+    }
+    
+    Timer(String name, String help, String labels) {
+        super(name, help, "histogram");
+        this.labels = labels;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+    }
+    
+    /* record the time since start, from System.nanoTime() */
+    public void since(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+    
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+    
+    @Override
+    protected void writeSamples(StringBuilder out) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            sample(out, getName() + "_bucket", prefix + LE[i], cumulative);
+        }
+        // read separately from the buckets, so while recording goes on it can be a little out
+        sample(out, getName() + "_sum", labels, sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1));
+        sample(out, getName() + "_count", labels, cumulative);
+    }
+}
@@ -0,0 +1,33 @@
+package uk.co.risk.assessment.metrics;
+
+/**
+ * A Timer for each value of an enum, such as command handling by ActionType, all under one name
+ * with the value as a label. Values never timed are left out.
+ *
+ */
+public class TimerFamily<E extends Enum<E>> extends Metric {
+    
+    private final Timer[] timers;
+    
+    TimerFamily(String name, String help, String label, Class<E> type) {
+        super(name, help, "histogram");
+        E[] values = type.getEnumConstants();
+        timers = new Timer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            timers[i] = new Timer(name, help, label + "=\"" + values[i].name() + "\"");
+        }
+    }
+    
+    public Timer get(E value) {
+        return timers[value.ordinal()];
+    }
+    
+    @Override
+    protected void writeSamples(StringBuilder out) {
+        for (Timer timer : timers) {
+            if (timer.getCount() > 0) {
+                timer.writeSamples(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package uk.co.risk.assessment.model;
+
+/**
+ * A command from a player: what they want to do and, for a raise, bet or setchips, how much.
+ * Clients can send one of these as is, or type a command which parse() turns into one. Mutable so
+ * the same object can be filled in again for the next command.
+ *
+ */
+public class Action {
+    
+    // the amount was missing or not a number
+    public static final int NO_AMOUNT = Integer.MIN_VALUE;
+    
+    private ActionType type;
+    private int amount = NO_AMOUNT;
+    // for sethand the cards, like 3DJS; for an unknown command, the command as sent
+    private String text;
+    
+    public Action() {
+    }
+    
+    public Action(ActionType type, int amount) {
+        this.type = type;
+        this.amount = amount;
+    }
+    
+    /* fill this in from a typed command such as "raise 20", the same way handleCommand always read them */
+    public Action parse(String command) {
+        amount = NO_AMOUNT;
+        text = null;
+        if (is(command, ActionType.SIT)) {
+            type = ActionType.SIT;
+        } else if (is(command, ActionType.DEAL)) {
+            type = ActionType.DEAL;
+        } else if (is(command, ActionType.CALL)) {
+            type = ActionType.CALL;
+        } else if (is(command, ActionType.CHECK)) {
+            type = ActionType.CHECK;
+        } else if (startsWith(command, "raise ")) {
+            type = ActionType.RAISE;
+            amount = parseAmount(command, 6);
+        } else if (startsWith(command, "bet ")) {
+            type = ActionType.BET;
+            amount = parseAmount(command, 4);
+        } else if (is(command, ActionType.FOLD)) {
+            type = ActionType.FOLD;
+        } else if (is(command, ActionType.BUYIN)) {
+            type = ActionType.BUYIN;
+        } else if (startsWith(command, "setchips")) {
+            type = ActionType.SETCHIPS;
+            amount = parseAmount(command, 9);
+        } else if (startsWith(command, "sethand")) {
+            type = ActionType.SETHAND;
+            if (command.length() == 12) {
+                text = command.substring(8);
+            }
+        } else {
+            type = ActionType.UNKNOWN;
+            text = command;
+        }
+        return this;
+    }
+    
+    private static boolean is(String command, ActionType type) {
+        return type.getCommand().equalsIgnoreCase(command);
+    }
+    
+    private static boolean startsWith(String command, String prefix) {
+        return command.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+    
+    /* as Integer.parseInt(command.substring(from)), but NO_AMOUNT rather than an exception */
+    private static int parseAmount(String command, int from) {
+        int length = command.length();
+        if (from >= length) {
+            return NO_AMOUNT;
+        }
+        boolean negative = command.charAt(from) == '-';
+        int i = (negative || command.charAt(from) == '+') ? from + 1 : from;
+        if (i == length) {
+            return NO_AMOUNT;
+        }
+        long result = 0;
+        for (; i < length; i++) {
+            int digit = Character.digit(command.charAt(i), 10);
+            result = result * 10 + digit;
+            if (digit < 0 || result > Integer.MAX_VALUE + 1L) {
+                return NO_AMOUNT;
+            }
+        }
+        result = negative ? -result : result;
+        return result > Integer.MAX_VALUE ? NO_AMOUNT : (int) result;
+    }
+    
+    public ActionType getType() {
+        return type;
+    }
+    
+    public void setType(ActionType type) {
+        this.type = type;
+    }
+    
+    public int getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(int amount) {
+        this.amount = amount;
+    }
+    
+    public String getText() {
+        return text;
+    }
+    
+    public void setText(String text) {
+        this.text = text;
+    }
+    
+    /* back to how a player would have typed it */
+    @Override
+    public String toString() {
+        if (type == null || type == ActionType.UNKNOWN) {
+            return text;
+        } else if (type == ActionType.SETHAND) {
+            return "sethand " + text;
+        }
+        return amount == NO_AMOUNT ? type.getCommand() : type.getCommand() + " " + amount;
+    }
+}
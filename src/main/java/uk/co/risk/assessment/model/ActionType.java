@@ -0,0 +1,24 @@
+package uk.co.risk.assessment.model;
+
+/**
+ * Everything a player can ask the game to do, with the word for it in a typed command.
+ *
+ */
+public enum ActionType {
+    SIT("sit"), DEAL("deal"), CALL("call"), CHECK("check"), RAISE("raise"), BET("bet"), FOLD("fold"),
+    BUYIN("buyin"),
+    // for testing only
+    SETCHIPS("setchips"), SETHAND("sethand"),
+    // anything we don't recognise, which just gets echoed back
+    UNKNOWN(null);
+    
+    private final String command;
+    
+    ActionType(String command) {
+        this.command = command;
+    }
+    
+    public String getCommand() {
+        return command;
+    }
+}
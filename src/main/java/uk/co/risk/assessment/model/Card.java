@@ -3,11 +3,15 @@ package uk.co.risk.assessment.model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A playing card. Immutable, so the deck can share one instance of each card between every game.
+ *
+ */
 public class Card {
     private static final Logger LOG = LoggerFactory.getLogger(Card.class);
     
-    int value;
-    Suit suit;
+    final int value;
+    final Suit suit;
     
     public Card(Suit suit, int value) {
         this.suit = suit;
@@ -76,16 +80,8 @@ public class Card {
         return value;
     }
     
-    public void setValue(int value) {
-        this.value = value;
-    }
-    
     public Suit getSuit() {
         return suit;
     }
     
-    public void setSuit(Suit suit) {
-        this.suit = suit;
-    }
-    
 }
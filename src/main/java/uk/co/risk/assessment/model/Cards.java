@@ -0,0 +1,109 @@
+package uk.co.risk.assessment.model;
+
+/**
+ * Compact card encoding for hot paths that shouldn't allocate. A card is an index from 0 to 51,
+ * suit major in Suit order (so 0 is the two of spades and 51 the ace of clubs), and any set of
+ * cards - a hand, a board, the dead cards - is a long with one bit per index.
+ *
+ * Nothing here changes what goes over the wire, Card is still what ends up in a Message.
+ */
+public final class Cards {
+
+    public static final int DECK_SIZE = 52;
+    public static final int NONE = -1;
+    public static final long FULL_DECK = (1L << DECK_SIZE) - 1;
+
+    private static final String VALUES = "23456789TJQKA";
+    private static final String SUITS = "SHDC";
+    private static final Suit[] SUIT_ORDER = Suit.values();
+    // one shared instance of each card, Card being immutable
+    private static final Card[] CARDS = new Card[DECK_SIZE];
+
+    static {
+        for (int index = 0; index < DECK_SIZE; index++) {
+            CARDS[index] = new Card(suit(index), value(index));
+        }
+    }
+
+    private Cards() {
+    }
+
+    public static int index(Suit suit, int value) {
+        return suit.ordinal() * 13 + value - 2;
+    }
+
+    public static int index(Card card) {
+        return card == null ? NONE : index(card.getSuit(), card.getValue());
+    }
+
+    public static Suit suit(int index) {
+        return SUIT_ORDER[index / 13];
+    }
+
+    /* aces are high other than low straights, so 2 to 14 rather than 1 to 13. */
+    public static int value(int index) {
+        return index % 13 + 2;
+    }
+
+    public static Card toCard(int index) {
+        return index == NONE ? null : CARDS[index];
+    }
+
+    /* parse the same value-then-suit notation as sethand, e.g. "TS" or "0S" for the ten of spades */
+    public static int parse(String notation) {
+        return index(new Card(notation.charAt(1), notation.charAt(0)));
+    }
+
+    public static String toString(int index) {
+        return index == NONE ? "--" : "" + VALUES.charAt(index % 13) + SUITS.charAt(index / 13);
+    }
+
+    public static long mask(int index) {
+        return 1L << index;
+    }
+
+    /* set of all the non-null cards given */
+    public static long mask(Card... cards) {
+        long set = 0L;
+        for (Card card : cards) {
+            if (card != null) {
+                set |= 1L << index(card);
+            }
+        }
+        return set;
+    }
+
+    public static boolean contains(long set, int index) {
+        return (set & (1L << index)) != 0;
+    }
+
+    public static int size(long set) {
+        return Long.bitCount(set);
+    }
+
+    /* lowest card in the set, NONE if it is empty. Use with set & (set - 1) to iterate. */
+    public static int first(long set) {
+        return set == 0 ? NONE : Long.numberOfTrailingZeros(set);
+    }
+
+    /* 13 bit rank mask of one suit, as used by HandEvaluator */
+    public static int ranks(long set, Suit suit) {
+        return (int) (set >>> (suit.ordinal() * 13)) & 0x1FFF;
+    }
+
+    public static Card[] toCards(long set) {
+        Card[] cards = new Card[size(set)];
+        for (int i = 0; set != 0; i++, set &= set - 1) {
+            cards[i] = toCard(first(set));
+        }
+        return cards;
+    }
+
+    public static String describe(long set) {
+        StringBuilder result = new StringBuilder();
+        for (; set != 0; set &= set - 1) {
+            result.append(toString(first(set)));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package uk.co.risk.assessment.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * What came of an action: whether it was accepted and if not why, plus the text we show players,
+ * which already goes out as the message data.
+ *
+ */
+public class CommandResult {
+    
+    private ActionType action;
+    private boolean accepted;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Rejection reason;
+    private String text;
+    
+    public CommandResult() {
+    }
+    
+    private CommandResult(ActionType action, boolean accepted, Rejection reason, String text) {
+        this.action = action;
+        this.accepted = accepted;
+        this.reason = reason;
+        this.text = text;
+    }
+    
+    public static CommandResult accepted(ActionType action, String text) {
+        return new CommandResult(action, true, null, text);
+    }
+    
+    public static CommandResult rejected(ActionType action, Rejection reason, String text) {
+        return new CommandResult(action, false, reason, text);
+    }
+    
+    public ActionType getAction() {
+        return action;
+    }
+    
+    public void setAction(ActionType action) {
+        this.action = action;
+    }
+    
+    public boolean isAccepted() {
+        return accepted;
+    }
+    
+    public void setAccepted(boolean accepted) {
+        this.accepted = accepted;
+    }
+    
+    public Rejection getReason() {
+        return reason;
+    }
+    
+    public void setReason(Rejection reason) {
+        this.reason = reason;
+    }
+    
+    @JsonIgnore
+    public String getText() {
+        return text;
+    }
+    
+    public void setText(String text) {
+        this.text = text;
+    }
+}
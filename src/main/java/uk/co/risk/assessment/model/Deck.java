@@ -0,0 +1,93 @@
+package uk.co.risk.assessment.model;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * A reusable deck. Holds the order of the 52 shared cards as indices, shuffles them in place with
+ * Fisher-Yates and deals by moving a cursor along, so nothing is allocated per hand or per card.
+ * The Random is pluggable: SecureRandom for real games, a seeded Random for reproducible ones.
+ *
+ */
+public class Deck {
+    private final int[] order = new int[Cards.DECK_SIZE];
+    private final Random random;
+    // if set, shuffling puts these first instead, for replaying a recorded hand
+    private final int[] stacked;
+    // position of the next card to deal
+    private int next = Cards.DECK_SIZE;
+    
+    public Deck(Random random) {
+        this.random = random;
+        this.stacked = null;
+    }
+    
+    private Deck(int[] stacked) {
+        this.random = null;
+        this.stacked = stacked;
+    }
+    
+    public static Deck secure() {
+        return new Deck(new SecureRandom());
+    }
+    
+    public static Deck seeded(long seed) {
+        return new Deck(new Random(seed));
+    }
+    
+    /* a deck that always deals the given card indexes first, then the rest of the deck in order */
+    public static Deck stacked(int... top) {
+        if (top.length > Cards.DECK_SIZE) {
+            throw new IllegalArgumentException("More than a deck of cards to stack");
+        }
+        return new Deck(top.clone());
+    }
+    
+    /* start from a fresh deck each time so the order only depends on the random numbers drawn */
+    public void shuffle() {
+        if (stacked != null) {
+            stack();
+            return;
+        }
+        for (int i = 0; i < Cards.DECK_SIZE; i++) {
+            order[i] = i;
+        }
+        for (int i = Cards.DECK_SIZE - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        next = 0;
+    }
+    
+    private void stack() {
+        long used = 0L;
+        for (int i = 0; i < stacked.length; i++) {
+            order[i] = stacked[i];
+            used |= Cards.mask(stacked[i]);
+        }
+        int position = stacked.length;
+        for (int i = 0; i < Cards.DECK_SIZE && position < Cards.DECK_SIZE; i++) {
+            if (!Cards.contains(used, i)) {
+                order[position++] = i;
+            }
+        }
+        next = 0;
+    }
+    
+    public int dealIndex() {
+        if (next >= Cards.DECK_SIZE) {
+            throw new IllegalStateException("No cards left in deck, shuffle first");
+        }
+        return order[next++];
+    }
+    
+    public Card deal() {
+        return Cards.toCard(dealIndex());
+    }
+    
+    public int remaining() {
+        return Cards.DECK_SIZE - next;
+    }
+}
@@ -1,14 +1,19 @@
 package uk.co.risk.assessment.model;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.security.SecureRandom;
 import java.util.Random;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.co.risk.assessment.dao.PlayerDAO;
+import uk.co.risk.assessment.equity.Runout;
+import uk.co.risk.assessment.equity.RunoutCalculator;
+import uk.co.risk.assessment.equity.Stop;
+import uk.co.risk.assessment.history.HandJournal;
+import uk.co.risk.assessment.history.HandRecord;
+import uk.co.risk.assessment.metrics.GameMetrics;
 
 /**
  * Encapsulating class for whole game including private information.
@@ -18,36 +23,47 @@ public class Game {
     private static final Logger LOG = LoggerFactory.getLogger(Game.class);
     
     Table table;
-    List<Card> deck;
+    Deck deck;
     Card[][] playerCards = new Card[Table.MAX_PLAYERS][2];
-    Random random;
-    // leftover chips from previous hand due to split pots
+    // chips from the previous hand's pots that nobody was left in to win
     int leftover = 0;
     
     PlayerDAO playerDAO;
+    // optional, if set we report expected chips per pot when everyone is all in
+    RunoutCalculator runoutCalculator;
+    // given the report once a runout has been worked out, on the calculator's thread
+    Consumer<String> runoutReporter;
+    // the runout being worked out, cancelled once the next hand is dealt
+    volatile Stop runoutStop;
+    volatile Runout lastRunout;
+    // optional, if set every hand is recorded and written to it
+    HandJournal handJournal;
+    String tableId;
+    long handsDealt;
+    HandRecord hand;
+    // optional, hands and showdowns counted for /metrics
+    GameMetrics metrics;
+    // reused by handleCommand for each typed command
+    private final Action parsed = new Action();
     
     public Game(PlayerDAO playerDAO) {
+        this(playerDAO, new SecureRandom());
+    }
+    
+    /* pass a seeded Random to get a reproducible sequence of deals */
+    public Game(PlayerDAO playerDAO, Random random) {
         this.playerDAO = playerDAO;
         table = new Table();
-        random = new Random();
+        deck = new Deck(random);
     }
     
-    /* aces are high other than low straights, so 2 to 14 rather than 1 to 13. */
     private void shuffle() {
-        deck = new LinkedList<>();
-        for (Suit suit : Suit.values()) {
-            for (int value = 2; value <= 14; value++) {
-                deck.add(new Card(suit, value));
-            }
-        }
+        deck.shuffle();
     }
     
-    /* returns a random card, removing it from the list of remaining cards */
+    /* returns the next card from the shuffled deck */
     public Card dealCard() {
-        int choice = random.nextInt(deck.size());
-        Card card = deck.get(choice);
-        deck.remove(choice);
-        return card;
+        return deck.deal();
     }
     
     // shorthand for a common check
@@ -61,7 +77,15 @@ public class Game {
     
     /* prepares the deck, prepares the table, deals 2 cards to each active player */
     public void deal() {
+        cancelRunout();
         shuffle();
+        if (metrics != null) {
+            metrics.handDealt();
+        }
+        if (handJournal != null) {
+            hand = new HandRecord(tableId, ++handsDealt, System.currentTimeMillis());
+            hand.begin(getTable(), leftover);
+        }
         getTable().nextHand(leftover);
         leftover = 0;
         for (int i = 0; i < Table.MAX_PLAYERS; i++) {
@@ -69,6 +93,9 @@ public class Game {
             if (isActive(p)) {
                 playerCards[i][0] = dealCard();
                 playerCards[i][1] = dealCard();
+                if (hand != null) {
+                    hand.dealtIn(i);
+                }
             }
         }
     }
@@ -82,137 +109,172 @@ public class Game {
         return null;
     }
     
-    /* deal with player input */
-    public synchronized String handleCommand(String playerName, String command) {
-        String lowerCommand = command.toLowerCase();
-        if ("sit".equals(lowerCommand)) {
-            if (getTable().countPlayers() < Table.MAX_PLAYERS
-                    && getTable().locatePlayer(playerName) == -1) {
-                Player player = playerDAO.getPlayer(playerName);
-                if (player == null) {
-                    LOG.warn("Couldn't find player {} - panic!", playerName);
-                    return playerName + " could not sit";
+    /* deal with typed player input. Not thread safe, the server runs each game's commands one at a time. */
+    public String handleCommand(String playerName, String command) {
+        return handleAction(playerName, parsed.parse(command)).getText();
+    }
+    
+    /* deal with player input. Not thread safe, the server runs each game's commands one at a time. */
+    public CommandResult handleAction(String playerName, Action action) {
+        HandRecord recording = hand;
+        if (recording == null) {
+            return dispatch(playerName, action);
+        }
+        int seat = getTable().locatePlayer(playerName);
+        CommandResult result = dispatch(playerName, action);
+        if (result.isAccepted()) {
+            recording.action(seat, result.getAction(), action.getAmount());
+        }
+        journalIfFinished(recording);
+        return result;
+    }
+    
+    private CommandResult dispatch(String playerName, Action action) {
+        ActionType type = action.getType() == null ? ActionType.UNKNOWN : action.getType();
+        switch (type) {
+            case SIT:
+                return sit(playerName);
+            case DEAL:
+                return deal(playerName);
+            case CALL:
+                if (!getTable().isNextToBet(playerName)) {
+                    return outOfTurn(type, playerName + " tried to bet out of turn!");
                 }
-                getTable().sitPlayer(player);
-                return playerName + " sat at table";
-            } else {
-                return playerName + " could not sit, no space or already seated.";
-            }
-        } else if ("deal".equals(lowerCommand)) {
-            if (getTable().getState() != TableState.PREDEAL) {
-                return playerName + " tried to deal, game in progress!";
-            }
-            if (!getTable().isDealer(playerName)) {
-                return playerName + " could not deal, not dealer";
-            } else {
-                String dealAttempt = getTable().checkCanDeal();
-                if (dealAttempt != null) {
-                    return dealAttempt;
-                } else {
-                    deal();
-                    return playerName + " dealt." + getNextToBet();
+                // TODO handle affordability/split pots
+                String result = getTable().call(getPlayerFromTable(getTable().getNextToBet()));
+                return CommandResult.accepted(type, checkNextBetter(playerName, result));
+            case CHECK:
+                return check(playerName);
+            case RAISE:
+            case BET:
+                return raise(playerName, type, action.getAmount());
+            case FOLD:
+                if (!getTable().isNextToBet(playerName)) {
+                    return outOfTurn(type, playerName + " tried to fold out of turn!");
                 }
-            }
-        } else if ("call".equals(lowerCommand)) {
-            if (!getTable().isNextToBet(playerName)) {
-                return playerName + " tried to bet out of turn!";
-            }
-            // TODO handle affordability/split pots
-            String result = getTable().call(getPlayerFromTable(getTable().getNextToBet()));
-            return checkNextBetter(playerName, result);
-        } else if ("check".equals(lowerCommand)) {
-            if (!getTable().isNextToBet(playerName)) {
-                return playerName + " tried to bet out of turn!";
-            }
-            Player p = getPlayerFromTable(getTable().getNextToBet());
-            if (p.totalBet() != getTable().getCurrentBet()) {
-                return playerName + " tried to check but can't!";
-            }
-            getPlayerFromTable(getTable().getNextToBet()).check();
-            return checkNextBetter(playerName, " checked.");
-        } else if (lowerCommand.startsWith("raise ") || lowerCommand.startsWith("bet ")) {
-            int length = 6;
-            if (lowerCommand.startsWith("bet")) {
-                length = 4;
-            }
-            if (!getTable().isNextToBet(playerName)) {
-                return playerName + " tried to bet out of turn!";
-            }
-            if (command.length() <= length) {
-                return playerName + " invalid raise";
-            }
-            int amount;
-            try {
-                amount = Integer.parseInt(command.substring(length));
-            } catch (NumberFormatException e) {
-                return playerName + " invalid raise";
-            }
-            if (amount % table.getSmallBlind() != 0) {
-                return playerName + " invalid raise, must be a multiple of small blind";
-            }
-            Player p = getPlayerFromTable(getTable().getNextToBet());
-            // allow for all in raise even if under raise limit.
-            if (amount < getTable().getMinimumRaise() && amount != p.getChips() - p.totalBet()) {
-                return playerName + " tried to raise too little - minimum is: "
-                        + getTable().getMinimumRaise();
-            }
-            if (p.getChips() - p.totalBet() < amount) {
-                return playerName + " tried to raise by more chips than they have!";
-            }
-            String result = getTable().raise(p, amount);
-            getTable().clearCheckedCalled(playerName);
-            getTable().setCurrentBet(amount);
-            return checkNextBetter(playerName, result);
-            
-        } else if ("fold".equals(lowerCommand)) {
-            if (!getTable().isNextToBet(playerName)) {
-                return playerName + " tried to fold out of turn!";
-            }
-            getTable().foldPlayer();
-            return checkNextBetter(playerName, " folded.");
-        } else if ("buyin".equals(lowerCommand)) {
-            Player player = playerDAO.getPlayer(playerName);
-            if (player.getChips() > getTable().getMinimumBuyin()) {
-                return playerName + " tried to buy in but has too many chips.";
-            }
-            if (getTable().getState() == TableState.PREDEAL || player.isPaused()
-                    || player.isFolded()) {
-                player.buyIn();
-                return playerName + " bought in.";
-            } else {
-                return playerName + " tried to buy in but is in a hand.";
-            }
-        } else if (lowerCommand.startsWith("setchips")) {
-            // TODO for TESTING ONLY
-            if (command.length() < 10) {
-                return playerName + " invalid setchips";
-            }
-            int amount;
-            try {
-                amount = Integer.parseInt(command.substring(9));
-            } catch (NumberFormatException e) {
-                return playerName + " invalid setchips";
-            }
+                getTable().foldPlayer();
+                return CommandResult.accepted(type, checkNextBetter(playerName, " folded."));
+            case BUYIN:
+                return buyIn(playerName);
+            case SETCHIPS:
+                // TODO for TESTING ONLY
+                if (action.getAmount() == Action.NO_AMOUNT) {
+                    return CommandResult.rejected(type, Rejection.INVALID_AMOUNT, playerName + " invalid setchips");
+                }
+                Player chipsPlayer = playerDAO.getPlayer(playerName);
+                chipsPlayer.setChips(action.getAmount());
+                playerDAO.save(chipsPlayer);
+                return CommandResult.accepted(type, playerName + " set their chips to: " + action.getAmount());
+            case SETHAND:
+                return setHand(playerName, action.getText());
+            default:
+                // just echo command back if we haven't dealt with it.
+                return CommandResult.rejected(ActionType.UNKNOWN, Rejection.UNKNOWN_COMMAND, action.toString());
+        }
+    }
+    
+    private CommandResult sit(String playerName) {
+        if (getTable().countPlayers() < Table.MAX_PLAYERS && getTable().locatePlayer(playerName) == -1) {
             Player player = playerDAO.getPlayer(playerName);
-            player.setChips(amount);
-            return playerName = " set their chips to: " + amount;
-        } else if (lowerCommand.startsWith("sethand")) {
-            // TODO for TESTING ONLY
-            if (command.length() != 12) {
-                return playerName + " invalid sethand";
+            if (player == null) {
+                LOG.warn("Couldn't find player {} - panic!", playerName);
+                return CommandResult.rejected(ActionType.SIT, Rejection.UNKNOWN_PLAYER, playerName + " could not sit");
             }
-            String cards = command.substring(8);
-            for (int i = 0; i < Table.MAX_PLAYERS; i++) {
-                Player p = getPlayerFromTable(i);
-                if (p != null && p.getName().equals(playerName)) {
-                    playerCards[i] = parseCards(cards.toUpperCase());
-                    return playerName + " set their cards to: " + cards;
-                }
+            getTable().sitPlayer(player);
+            return CommandResult.accepted(ActionType.SIT, playerName + " sat at table");
+        }
+        return CommandResult.rejected(ActionType.SIT, Rejection.NO_SEAT,
+                playerName + " could not sit, no space or already seated.");
+    }
+    
+    private CommandResult deal(String playerName) {
+        if (getTable().getState() != TableState.PREDEAL) {
+            return CommandResult.rejected(ActionType.DEAL, Rejection.GAME_IN_PROGRESS,
+                    playerName + " tried to deal, game in progress!");
+        }
+        if (!getTable().isDealer(playerName)) {
+            return CommandResult.rejected(ActionType.DEAL, Rejection.NOT_DEALER, playerName + " could not deal, not dealer");
+        }
+        String dealAttempt = getTable().checkCanDeal();
+        if (dealAttempt != null) {
+            return CommandResult.rejected(ActionType.DEAL, Rejection.CANNOT_DEAL, dealAttempt);
+        }
+        deal();
+        return CommandResult.accepted(ActionType.DEAL, playerName + " dealt." + getNextToBet());
+    }
+    
+    private CommandResult check(String playerName) {
+        if (!getTable().isNextToBet(playerName)) {
+            return outOfTurn(ActionType.CHECK, playerName + " tried to bet out of turn!");
+        }
+        Player p = getPlayerFromTable(getTable().getNextToBet());
+        if (p.totalBet() != getTable().getCurrentBet()) {
+            return CommandResult.rejected(ActionType.CHECK, Rejection.CANNOT_CHECK, playerName + " tried to check but can't!");
+        }
+        p.check();
+        return CommandResult.accepted(ActionType.CHECK, checkNextBetter(playerName, " checked."));
+    }
+    
+    /* raise and bet are the same thing, the amount being what the total bet goes up to */
+    private CommandResult raise(String playerName, ActionType type, int amount) {
+        if (!getTable().isNextToBet(playerName)) {
+            return outOfTurn(type, playerName + " tried to bet out of turn!");
+        }
+        if (amount == Action.NO_AMOUNT) {
+            return CommandResult.rejected(type, Rejection.INVALID_AMOUNT, playerName + " invalid raise");
+        }
+        if (amount % table.getSmallBlind() != 0) {
+            return CommandResult.rejected(type, Rejection.NOT_MULTIPLE_OF_SMALL_BLIND,
+                    playerName + " invalid raise, must be a multiple of small blind");
+        }
+        Player p = getPlayerFromTable(getTable().getNextToBet());
+        // allow for all in raise even if under raise limit.
+        if (amount < getTable().getMinimumRaise() && amount != p.getChips() - p.totalBet()) {
+            return CommandResult.rejected(type, Rejection.RAISE_TOO_SMALL,
+                    playerName + " tried to raise too little - minimum is: " + getTable().getMinimumRaise());
+        }
+        if (p.getChips() - p.totalBet() < amount) {
+            return CommandResult.rejected(type, Rejection.NOT_ENOUGH_CHIPS,
+                    playerName + " tried to raise by more chips than they have!");
+        }
+        String result = getTable().raise(p, amount);
+        getTable().clearCheckedCalled(playerName);
+        getTable().setCurrentBet(amount);
+        return CommandResult.accepted(type, checkNextBetter(playerName, result));
+    }
+    
+    private CommandResult buyIn(String playerName) {
+        Player player = playerDAO.getPlayer(playerName);
+        if (player.getChips() > getTable().getMinimumBuyin()) {
+            return CommandResult.rejected(ActionType.BUYIN, Rejection.TOO_MANY_CHIPS,
+                    playerName + " tried to buy in but has too many chips.");
+        }
+        if (getTable().getState() == TableState.PREDEAL || player.isPaused() || player.isFolded()) {
+            player.buyIn();
+            playerDAO.save(player);
+            return CommandResult.accepted(ActionType.BUYIN, playerName + " bought in.");
+        }
+        return CommandResult.rejected(ActionType.BUYIN, Rejection.IN_HAND, playerName + " tried to buy in but is in a hand.");
+    }
+    
+    private CommandResult setHand(String playerName, String cards) {
+        // TODO for TESTING ONLY
+        if (cards == null) {
+            return CommandResult.rejected(ActionType.SETHAND, Rejection.INVALID_AMOUNT, playerName + " invalid sethand");
+        }
+        for (int i = 0; i < Table.MAX_PLAYERS; i++) {
+            Player p = getPlayerFromTable(i);
+            if (p != null && p.getName().equals(playerName)) {
+                playerCards[i] = parseCards(cards.toUpperCase());
+                return CommandResult.accepted(ActionType.SETHAND, playerName + " set their cards to: " + cards);
             }
-            
         }
-        // just echo command back if we haven't dealt with it.
-        return command;
+        // echoed back as before
+        return CommandResult.rejected(ActionType.SETHAND, Rejection.NOT_SEATED, "sethand " + cards);
+    }
+    
+    private static CommandResult outOfTurn(ActionType type, String text) {
+        return CommandResult.rejected(type, Rejection.OUT_OF_TURN, text);
     }
     
     // just used for testing card-setting - parse a string like 3DJS into three of diamonds, jack of spades
@@ -230,13 +292,46 @@ public class Game {
     
     private String finishHand() {
         // work out who won what.
-        String finishText = findWinners();
+        String finishText = settle();
         getTable().setState(TableState.PREDEAL);
         getTable().nextDealer();
         getTable().setNextToBet(-1);
         return finishText;
     }
     
+    /* pay out the pots and record the outcome */
+    private String settle() {
+        long start = System.nanoTime();
+        String finishText = findWinners();
+        if (metrics != null) {
+            metrics.getShowdown().since(start);
+        }
+        saveChips();
+        if (hand != null) {
+            hand.finish(playerCards, getTable().getCards(), leftover);
+        }
+        return finishText;
+    }
+    
+    /* once its last action is in, a finished hand goes off to the journal */
+    private void journalIfFinished(HandRecord recording) {
+        if (recording.isFinished()) {
+            handJournal.append(recording);
+            if (hand == recording) {
+                hand = null;
+            }
+        }
+    }
+    
+    /* the hand is settled, so this is the state to persist */
+    private void saveChips() {
+        for (Player p : getTable().getPlayers()) {
+            if (p != null) {
+                playerDAO.save(p);
+            }
+        }
+    }
+    
     /*
      * checks if betting round has finished and if so advances to next stage of game. Returns outcome to be sent to players.
      */
@@ -252,11 +347,12 @@ public class Game {
             if (!finishedRound) {
                 return playerName + actionResult + getNextToBet();
             } else {
-                LOG.info("Round of betting finished, resolve next table state");
+                LOG.debug("Round of betting finished, resolve next table state");
                 String finishText = null;
                 getTable().endBettingRound();
                 // At this point, if everyone is all in, or all but one person are all in, we're actually finished
                 if (getTable().remainingActivePlayers(true) <= 1) {
+                    startRunout();
                     finishText = finishHand();
                     return playerName + actionResult + ". Hand finished. " + finishText;
                 }
@@ -276,8 +372,8 @@ public class Game {
                         getTable().getCards()[4] = dealCard();
                         break;
                     case RIVER:
-                        finishText = findWinners();
-                        getTable().setState(TableState.PREDEAL);
+                        // same as any other finish, or betting could carry on into the next hand
+                        finishText = finishHand();
                         break;
                     default:
                         LOG.warn("This should never happen, bad table state!");
@@ -289,6 +385,73 @@ public class Game {
         }
     }
     
+    /*
+     * if turned on, start working out what everyone could expect from the pots before the remaining
+     * cards are dealt. That's too slow to wait for here, so it goes to the runout reporter when done.
+     */
+    private void startRunout() {
+        lastRunout = null;
+        if (runoutCalculator == null || getTable().remainingActivePlayers(false) < 2) {
+            return;
+        }
+        int numPots = getTable().getNumPots();
+        int[] amounts = new int[numPots];
+        boolean[][] potPlayers = new boolean[numPots][Table.MAX_PLAYERS];
+        // copies, the hand is finished and the next one dealt without waiting for the calculation
+        Card[][] hands = new Card[Table.MAX_PLAYERS][];
+        String[] names = new String[Table.MAX_PLAYERS];
+        for (int j = 0; j < Table.MAX_PLAYERS; j++) {
+            if (isActive(getPlayerFromTable(j))) {
+                hands[j] = playerCards[j].clone();
+                names[j] = getPlayerFromTable(j).getName();
+            }
+        }
+        for (int i = 0; i < numPots; i++) {
+            amounts[i] = getTable().getPots()[i].getPot();
+            for (int j = 0; j < Table.MAX_PLAYERS; j++) {
+                potPlayers[i][j] = hands[j] != null && getTable().getPots()[i].getPlayers()[j];
+            }
+        }
+        Stop stop = runoutCalculator.newStop();
+        runoutStop = stop;
+        runoutCalculator.calculateAsync(hands, getTable().getCards().clone(), amounts, potPlayers, stop)
+                .whenComplete((runout, error) -> {
+                    if (error != null) {
+                        LOG.error("All in runout failed", error);
+                    } else if (stop.isCancelled()) {
+                        LOG.debug("All in runout cancelled, the next hand has started");
+                    } else if (!runout.isComplete()) {
+                        LOG.warn("All in runout not finished within {}ms, not reporting it",
+                                runoutCalculator.getTimeBudgetMillis());
+                    } else {
+                        lastRunout = runout;
+                        if (runoutReporter != null) {
+                            runoutReporter.accept(describeRunout(runout, names));
+                        }
+                    }
+                });
+    }
+    
+    private static String describeRunout(Runout runout, String[] names) {
+        StringBuffer result = new StringBuffer("Last hand all in, expected chips: ");
+        for (int j = 0; j < Table.MAX_PLAYERS; j++) {
+            if (names[j] != null) {
+                result.append(names[j]).append(" ").append(Math.round(runout.getExpectedChips(j))).append(", ");
+            }
+        }
+        result.setLength(result.length() - 2);
+        return result.append(".").toString();
+    }
+    
+    /* stop working out the last all in runout, if it still is. Safe from any thread. */
+    public void cancelRunout() {
+        Stop stop = runoutStop;
+        if (stop != null) {
+            stop.cancel();
+            runoutStop = null;
+        }
+    }
+    
     private void dealRemainingCards() {
         switch (getTable().getState()) {
             case PREFLOP:
@@ -333,6 +496,10 @@ public class Game {
             /* by definition this player must have been involved in all pots so don't need to check */
             for (int i = 0; i < getTable().getNumPots(); i++) {
                 winnings += getTable().getPots()[i].getPot();
+                if (hand != null) {
+                    hand.pot(getTable().getPots()[i].getPot(), 1 << getTable().locatePlayer(winner),
+                            getTable().getPots()[i].getPot());
+                }
             }
             winner.addChips(winnings);
             return winner.getName() + " won " + winnings;
@@ -344,53 +511,71 @@ public class Game {
         dealRemainingCards();
         // then work out the hands of all remaining players
         Hand[] hands = new Hand[Table.MAX_PLAYERS];
+        int[] strengths = new int[Table.MAX_PLAYERS];
         for (int i = 0; i < Table.MAX_PLAYERS; i++) {
             Player p = getPlayerFromTable(i);
             if (isActive(p)) {
                 hands[i] = new Hand(playerCards[i], getTable().getCards());
+                strengths[i] = hands[i].getStrength();
             }
         }
         // then for each pot, work out who the winners are
+        int[] potWinners = new int[Table.MAX_PLAYERS];
         for (int i = 0; i < getTable().getNumPots(); i++) {
-            List<Integer> potWinners = new ArrayList<>();
+            int numWinners = 0;
+            int best = -1;
             for (int j = 0; j < Table.MAX_PLAYERS; j++) {
                 Player p = getTable().getPlayers()[j];
                 if (isActive(p) && getTable().getPots()[i].getPlayers()[j]) {
-                    if (potWinners.isEmpty()) {
-                        potWinners.add(j);
-                    } else {
-                        int compare = hands[j].betterThan(hands[potWinners.get(0)]);
-                        if (compare == 0) {
-                            potWinners.add(j);
-                        } else if (compare == 1) {
-                            potWinners.clear();
-                            potWinners.add(j);
-                        }
+                    if (strengths[j] > best) {
+                        best = strengths[j];
+                        numWinners = 0;
+                        potWinners[numWinners++] = j;
+                    } else if (strengths[j] == best) {
+                        potWinners[numWinners++] = j;
                     }
                 }
             }
+            // everyone in a side pot folded to players all in for less, it goes into the next hand
+            if (numWinners == 0 && getTable().getPots()[i].getPot() > 0) {
+                int unclaimed = getTable().getPots()[i].getPot();
+                leftover += unclaimed;
+                if (hand != null) {
+                    hand.pot(unclaimed, 0, 0);
+                }
+                getTable().getPots()[i].setPot(0);
+                result.append("Nobody is left in pot " + (i + 1) + ", " + unclaimed + " goes to the next hand. ");
+            }
             // work out how much each winner gets
-            int numWinners = potWinners.size();
             if (numWinners > 0) {
                 int toSplit = getTable().getPots()[i].getPot();
-                while (toSplit % numWinners != 0) {
-                    toSplit -= getTable().getSmallBlind();
-                    leftover += getTable().getSmallBlind();
-                }
+                int share = toSplit / numWinners;
                 StringBuffer winningNames = new StringBuffer();
+                int winners = 0;
                 for (int j = 0; j < numWinners; j++) {
-                    Player p = getPlayerFromTable(potWinners.get(j));
+                    winners |= 1 << potWinners[j];
+                    Player p = getPlayerFromTable(potWinners[j]);
                     winningNames.append(p.getName());
                     if (j < numWinners - 1) {
                         winningNames.append(", ");
                     }
-                    p.addChips(toSplit / numWinners);
+                }
+                // chips that don't split evenly go one each to the winners first after the dealer
+                int oddChips = toSplit - share * numWinners;
+                for (int j = 1; j <= Table.MAX_PLAYERS; j++) {
+                    int seat = (getTable().getDealer() + j) % Table.MAX_PLAYERS;
+                    if ((winners & (1 << seat)) != 0) {
+                        getPlayerFromTable(seat).addChips(oddChips-- > 0 ? share + 1 : share);
+                    }
+                }
+                if (hand != null) {
+                    hand.pot(toSplit, winners, share);
                 }
                 // clear down pot for display
                 getTable().getPots()[i].setPot(0);
                 result.append(
-                        winningNames.toString() + " won " + (toSplit / numWinners) + " from pot "
-                                + (i + 1) + " with " + hands[potWinners.get(0)].toString() + ". ");
+                        winningNames.toString() + " won " + share + " from pot "
+                                + (i + 1) + " with " + hands[potWinners[0]].toString() + ". ");
             }
         }
         return result.toString();
@@ -404,14 +589,59 @@ public class Game {
         this.table = table;
     }
     
-    public List<Card> getDeck() {
+    public Deck getDeck() {
         return deck;
     }
     
-    public void setDeck(List<Card> deck) {
+    public void setDeck(Deck deck) {
         this.deck = deck;
     }
     
+    public RunoutCalculator getRunoutCalculator() {
+        return runoutCalculator;
+    }
+    
+    public void setRunoutCalculator(RunoutCalculator runoutCalculator) {
+        this.runoutCalculator = runoutCalculator;
+    }
+    
+    /* told what to say about an all in runout once it's worked out, on the calculator's thread */
+    public void setRunoutReporter(Consumer<String> runoutReporter) {
+        this.runoutReporter = runoutReporter;
+    }
+    
+    public HandJournal getHandJournal() {
+        return handJournal;
+    }
+    
+    /* record every hand from now on into the journal, as played on the given table */
+    public void setHandJournal(HandJournal handJournal, String tableId) {
+        this.handJournal = handJournal;
+        this.tableId = tableId;
+    }
+    
+    public GameMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public void setMetrics(GameMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /* expected chips from the last all in, null if it wasn't calculated or isn't yet */
+    public Runout getLastRunout() {
+        return lastRunout;
+    }
+    
+    /* chips from split pots carried into the next hand */
+    public int getLeftover() {
+        return leftover;
+    }
+    
+    public void setLeftover(int leftover) {
+        this.leftover = leftover;
+    }
+    
     public Card[][] getHands() {
         return playerCards;
     }
@@ -422,6 +652,18 @@ public class Game {
     
     // if someone's connection drops, for now we just fold them if needed and they leave the game
     public String playerLeft(String playerName) {
+        HandRecord recording = hand;
+        if (recording == null) {
+            return leave(playerName);
+        }
+        int seat = getTable().locatePlayer(playerName);
+        String ret = leave(playerName);
+        recording.left(seat);
+        journalIfFinished(recording);
+        return ret;
+    }
+    
+    private String leave(String playerName) {
         String ret;
         switch (getTable().getState()) {
             case PREDEAL:
@@ -457,6 +699,8 @@ public class Game {
                 break;
         }
         getTable().removePlayer(playerName);
+        // anything they had in the pot is gone now
+        playerDAO.save(playerDAO.getPlayer(playerName));
         return ret;
     }
     
@@ -0,0 +1,168 @@
+package uk.co.risk.assessment.model;
+
+import uk.co.risk.assessment.model.Hand.HandType;
+
+/**
+ * Table driven evaluator for the best five card hand out of five to seven cards.
+ *
+ * Cards are folded into one 13 bit rank mask per suit (bit 0 is a two, bit 12 an ace) and the hand
+ * is classified with a handful of bit operations plus two precomputed tables indexed by rank mask.
+ * The result is a single int: the HandType strength from bit 20 upwards, followed by up to five
+ * ordinals (card values 2 to 14) of four bits each, most significant first. Unused ordinals are
+ * zero, so comparing two results as ints compares the hands.
+ */
+public final class HandEvaluator {
+
+    public static final int CATEGORY_SHIFT = 20;
+
+    private static final Card[] NO_CARDS = new Card[0];
+
+    private static final int RANK_MASKS = 1 << 13;
+    private static final int ACE = 1 << 12;
+    private static final int WHEEL = ACE | 0xF;
+
+    // value of the top card of the best straight within each rank mask, 0 if there isn't one
+    private static final byte[] STRAIGHT_HIGH = new byte[RANK_MASKS];
+    // the five highest card values within each rank mask, packed as ordinals
+    private static final int[] TOP_FIVE = new int[RANK_MASKS];
+
+    static {
+        for (int mask = 0; mask < RANK_MASKS; mask++) {
+            for (int high = 12; high >= 4; high--) {
+                int run = 0x1F << (high - 4);
+                if ((mask & run) == run) {
+                    STRAIGHT_HIGH[mask] = (byte) (high + 2);
+                    break;
+                }
+            }
+            if (STRAIGHT_HIGH[mask] == 0 && (mask & WHEEL) == WHEEL) {
+                STRAIGHT_HIGH[mask] = 5;
+            }
+            int packed = 0;
+            int shift = 16;
+            for (int bit = 12; bit >= 0 && shift >= 0; bit--) {
+                if ((mask & (1 << bit)) != 0) {
+                    packed |= (bit + 2) << shift;
+                    shift -= 4;
+                }
+            }
+            TOP_FIVE[mask] = packed;
+        }
+    }
+
+    private HandEvaluator() {
+    }
+
+    /* evaluate hole cards plus board, ignoring any board cards not yet dealt */
+    public static int evaluate(Card[] playerCards, Card[] tableCards) {
+        // one 16 bit lane of rank bits per suit, in Suit order
+        long lanes = addCards(addCards(0L, playerCards), tableCards);
+        return evaluate((int) lanes & 0x1FFF, (int) (lanes >>> 16) & 0x1FFF,
+                (int) (lanes >>> 32) & 0x1FFF, (int) (lanes >>> 48) & 0x1FFF);
+    }
+    
+    private static long addCards(long lanes, Card[] cards) {
+        for (int i = 0; i < cards.length; i++) {
+            Card card = cards[i];
+            if (card != null) {
+                lanes |= 1L << ((card.getSuit().ordinal() << 4) + card.getValue() - 2);
+            }
+        }
+        return lanes;
+    }
+
+    public static int evaluate(Card[] cards) {
+        return evaluate(cards, NO_CARDS);
+    }
+
+    /* evaluate a set of five to seven cards in the Cards bitmask encoding */
+    public static int evaluate(long cards) {
+        return evaluate((int) cards & 0x1FFF, (int) (cards >>> 13) & 0x1FFF,
+                (int) (cards >>> 26) & 0x1FFF, (int) (cards >>> 39) & 0x1FFF);
+    }
+
+    /* evaluate from one rank mask per suit. Between them the masks must hold five to seven cards. */
+    public static int evaluate(int spades, int hearts, int diamonds, int clubs) {
+        int ranks = spades | hearts | diamonds | clubs;
+
+        // with at most seven cards, a flush or a straight rules out four of a kind and full house
+        int flush = flushRanks(spades, hearts, diamonds, clubs);
+        if (flush != 0) {
+            int straight = STRAIGHT_HIGH[flush];
+            if (straight == 14) {
+                return category(HandType.ROYALFLUSH);
+            } else if (straight != 0) {
+                return category(HandType.STRAIGHTFLUSH) | straight << 16;
+            }
+            return category(HandType.FLUSH) | TOP_FIVE[flush];
+        }
+        int straight = STRAIGHT_HIGH[ranks];
+        if (straight != 0) {
+            return category(HandType.STRAIGHT) | straight << 16;
+        }
+
+        int fours = spades & hearts & diamonds & clubs;
+        if (fours != 0) {
+            return category(HandType.FOUROFAKIND) | value(fours) << 16
+                    | topCard(ranks ^ fours) << 12;
+        }
+        // no fours left, so these are ranks held exactly three times and exactly twice
+        int threes = ((clubs & diamonds) | (hearts & spades)) & ((clubs & hearts) | (diamonds & spades));
+        int pairs = ranks & ~(spades ^ hearts ^ diamonds ^ clubs);
+        if (threes != 0) {
+            int trips = Integer.highestOneBit(threes);
+            int rest = (threes ^ trips) | pairs;
+            if (rest != 0) {
+                return category(HandType.FULLHOUSE) | value(trips) << 16 | topCard(rest) << 12;
+            }
+            return category(HandType.THREEOFAKIND) | value(trips) << 16
+                    | (TOP_FIVE[ranks ^ trips] >>> 4) & 0xFF00;
+        }
+        if (pairs != 0) {
+            int high = Integer.highestOneBit(pairs);
+            int low = Integer.highestOneBit(pairs ^ high);
+            if (low != 0) {
+                return category(HandType.TWOPAIR) | value(high) << 16 | value(low) << 12
+                        | topCard(ranks ^ high ^ low) << 8;
+            }
+            return category(HandType.PAIR) | value(high) << 16
+                    | (TOP_FIVE[ranks ^ high] >>> 4) & 0xFFF0;
+        }
+        return category(HandType.HIGHCARD) | TOP_FIVE[ranks];
+    }
+
+    public static HandType handType(int strength) {
+        return HandType.fromStrength(strength >>> CATEGORY_SHIFT);
+    }
+
+    /* ordinal i (0 to 4) of an evaluated hand, 0 if the hand type doesn't use it */
+    public static int ordinal(int strength, int i) {
+        return (strength >>> (16 - 4 * i)) & 0xF;
+    }
+
+    private static int flushRanks(int spades, int hearts, int diamonds, int clubs) {
+        if (Integer.bitCount(spades) >= 5) {
+            return spades;
+        } else if (Integer.bitCount(hearts) >= 5) {
+            return hearts;
+        } else if (Integer.bitCount(diamonds) >= 5) {
+            return diamonds;
+        } else if (Integer.bitCount(clubs) >= 5) {
+            return clubs;
+        }
+        return 0;
+    }
+
+    private static int category(HandType handType) {
+        return handType.getStrength() << CATEGORY_SHIFT;
+    }
+
+    /* card value of a single rank bit */
+    private static int value(int rankBit) {
+        return Integer.numberOfTrailingZeros(rankBit) + 2;
+    }
+
+    private static int topCard(int ranks) {
+        return TOP_FIVE[ranks] >>> 16;
+    }
+}
@@ -0,0 +1,11 @@
+package uk.co.risk.assessment.model;
+
+/**
+ * Why the game refused an action.
+ *
+ */
+public enum Rejection {
+    NO_SEAT, UNKNOWN_PLAYER, NOT_SEATED, GAME_IN_PROGRESS, NOT_DEALER, CANNOT_DEAL, OUT_OF_TURN,
+    CANNOT_CHECK, INVALID_AMOUNT, NOT_MULTIPLE_OF_SMALL_BLIND, RAISE_TOO_SMALL, NOT_ENOUGH_CHIPS,
+    TOO_MANY_CHIPS, IN_HAND, UNKNOWN_COMMAND
+}
@@ -102,6 +102,10 @@ public class Table {
     public void nextHand(int leftover) {
         cards = new Card[5];
         state = TableState.PREFLOP;
+        // pots aren't always emptied when paid out, so clear any left from the last hand
+        for (int i = 0; i < MAX_PLAYERS; i++) {
+            pots[i].pot = 0;
+        }
         pots[0].pot = leftover;
         leftover = 0;
         for (int i = 0; i < MAX_PLAYERS; i++) {
@@ -170,7 +174,7 @@ public class Table {
     
     /* locate the next player from a given position who is still in the game */
     private int findNextPlayer(int start) {
-        int index = start + 1;
+        int index = (start + 1) % MAX_PLAYERS;
         while (start != index && (players[index] == null || players[index].isPaused()
                 || players[index].isFolded() || players[index].isAllIn())) {
             index = (index + 1) % MAX_PLAYERS;
@@ -313,7 +317,9 @@ public class Table {
     
     /* work out how many chips of bet go into each pot */
     private void makeBet(Player p, int amount) {
-        LOG.info("Player {} making bet of amount {}", p.getName(), amount);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Player {} making bet of amount {}", p.getName(), amount);
+        }
         int startLevel = potLevel + p.totalBet();
         for (int i = 0; i < numPots; i++) {
             /* ignore pots that we've already filled up */
@@ -322,14 +328,18 @@ public class Table {
             }
             if (startLevel + amount <= pots[i].betLimit) {
                 /* this is the final pot we need to put stuff into */
-                LOG.info("Final bet of {} going into pot {}", amount, i);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Final bet of {} going into pot {}", amount, i);
+                }
                 p.makeBet(i, amount);
                 break;
             } else {
                 int toFillPot = pots[i].betLimit - startLevel;
                 p.makeBet(i, toFillPot);
                 amount -= toFillPot;
-                LOG.info("Filling pot {} with bet amount {} leaving {}", i, toFillPot, amount);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Filling pot {} with bet amount {} leaving {}", i, toFillPot, amount);
+                }
             }
         }
     }
@@ -476,7 +486,7 @@ public class Table {
         this.minimumBuyin = minimumBuyin;
     }
     
-    class Pot {
+    public class Pot {
         int pot;
         /* maximum bet that can go into this pot, determined by still-in player with fewest chips */
         int betLimit;
@@ -0,0 +1,117 @@
+package uk.co.risk.assessment.server;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import uk.co.risk.assessment.message.Message;
+import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.Cards;
+
+/**
+ * Builds the JSON for a message that goes to everyone at a table but carries each player's own
+ * cards. Everything but the cards is serialised once per update with shared(); withCards() then
+ * just appends a recipient's cards from precomputed fragments, so the cost of an update barely
+ * grows with the number of people watching. The output is the same JSON as serialising the whole
+ * Message, apart from cards coming last.
+ *
+ * Each thread builds its JSON in its own reused buffer, so the only allocation per recipient is
+ * the String handed to the socket.
+ *
+ */
+public class BroadcastEncoder {
+    private static final String CARDS_FIELD = "\"cards\":";
+    
+    private final ObjectWriter sharedWriter;
+    // json for each card by Cards index
+    private final String[] cardJson = new String[Cards.DECK_SIZE];
+    private final ThreadLocal<BuilderWriter> buffers = ThreadLocal.withInitial(BuilderWriter::new);
+    
+    @JsonIgnoreProperties("cards")
+    private abstract static class WithoutCards {
+    }
+    
+    public BroadcastEncoder(ObjectMapper mapper) {
+        sharedWriter = mapper.copy().addMixIn(Message.class, WithoutCards.class).writerFor(Message.class);
+        for (int i = 0; i < Cards.DECK_SIZE; i++) {
+            try {
+                cardJson[i] = mapper.writeValueAsString(Cards.toCard(i));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot convert card to json", e);
+            }
+        }
+    }
+    
+    /* the message minus its cards and closing brace, ready for withCards */
+    public String shared(Message message) throws JsonProcessingException {
+        StringBuilder json = buffer();
+        try {
+            sharedWriter.writeValue(buffers.get(), message);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // nothing to go wrong writing to a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        json.setLength(json.length() - 1);
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        return json.append(CARDS_FIELD).toString();
+    }
+    
+    public String withCards(String shared, Card[] cards) {
+        StringBuilder json = buffer();
+        json.append(shared);
+        if (cards == null) {
+            return json.append("null}").toString();
+        }
+        json.append('[');
+        for (int i = 0; i < cards.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(cards[i] == null ? "null" : cardJson[Cards.index(cards[i])]);
+        }
+        return json.append("]}").toString();
+    }
+    
+    /* this thread's buffer, emptied */
+    private StringBuilder buffer() {
+        StringBuilder json = buffers.get().builder;
+        json.setLength(0);
+        return json;
+    }
+    
+    /* unsynchronized StringWriter, for Jackson to write into our buffer */
+    private static class BuilderWriter extends Writer {
+        private final StringBuilder builder = new StringBuilder(4096);
+        
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            builder.append(chars, offset, length);
+        }
+        
+        @Override
+        public void write(String string, int offset, int length) {
+            builder.append(string, offset, offset + length);
+        }
+        
+        @Override
+        public void write(int c) {
+            builder.append((char) c);
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package uk.co.risk.assessment.server;
+
+/**
+ * One client's WebSocket, whichever server it came in on. Sends are asynchronous and can be made
+ * from any thread; a send on a connection that has closed is dropped, its close will follow.
+ *
+ */
+public interface Connection {
+    
+    // close codes we use, from RFC 6455
+    int NORMAL = 1000;
+    int TRY_AGAIN_LATER = 1013;
+    
+    boolean isOpen();
+    
+    void send(String message);
+    
+    void send(byte[] message);
+    
+    /* frames handed over to send but not yet written to the network */
+    int getQueuedFrames();
+    
+    void close();
+    
+    /* close with a close frame, which goes after anything already queued */
+    void close(int code, String reason);
+    
+    /* drop the connection at once, without waiting for what's queued */
+    void abort(int code, String reason);
+    
+    /* for logging, null if not known */
+    String getRemoteAddress();
+}
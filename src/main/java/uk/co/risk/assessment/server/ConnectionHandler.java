@@ -0,0 +1,32 @@
+package uk.co.risk.assessment.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * What a WebSocket server tells us about its connections, so the game protocol is the same
+ * whichever server the connections are on. Each connection's calls come one at a time.
+ *
+ */
+public interface ConnectionHandler {
+    
+    void opened(Connection connection, boolean binary);
+    
+    void received(Connection connection, String message);
+    
+    void received(Connection connection, ByteBuffer message);
+    
+    void closed(Connection connection);
+    
+    /* clients ask for the binary protocol by connecting with ?protocol=binary */
+    static boolean wantsBinary(String query) {
+        if (query == null || query.isEmpty()) {
+            return false;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.equals("protocol=binary")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,284 @@
+package uk.co.risk.assessment.server;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import uk.co.risk.assessment.model.Card;
+import uk.co.risk.assessment.model.Player;
+import uk.co.risk.assessment.model.Table;
+
+/**
+ * Keeps track of the last table state sent to a table's delta clients, so that each update only
+ * needs to carry what changed. Every update gets the next sequence number; a client that sees a gap
+ * asks for a snapshot and gets the whole table again.
+ *
+ * A delta is an object holding only the fields that changed. Applying it to the previous state:
+ * where the previous value is an object and the delta value is an object, apply recursively; where
+ * the previous value is an array and the delta value is an object, the keys are indexes of changed
+ * elements, applied the same way; anything else simply replaces the previous value.
+ *
+ * Changes are found by comparing the table with a copy of the values it was last sent with, not
+ * by serialising the whole table and diffing that, so an update costs about as much as what it
+ * sends: a bet is a few numbers compared and a few nodes built. Seats, pots and cards that did
+ * change go through the mapper's own serializers, but the field names here have to be kept in
+ * step with TableJsonModule. A changed bets, cards or pots array is sent whole, as they are short.
+ *
+ * The sequence number and state are only touched by the table's own tasks.
+ *
+ */
+public class DeltaTracker {
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    
+    private long seq = 0;
+    // what the table looked like when last sent, null until the first update after a reset
+    private Sent last;
+    // sessions that asked for deltas, and those of them that need a full snapshot next
+    private final Set<Session> deltaSessions = ConcurrentHashMap.newKeySet();
+    private final Set<Session> needSnapshot = ConcurrentHashMap.newKeySet();
+    
+    public void addSession(Session session) {
+        deltaSessions.add(session);
+        needSnapshot.add(session);
+    }
+    
+    public void removeSession(Session session) {
+        deltaSessions.remove(session);
+        needSnapshot.remove(session);
+    }
+    
+    public boolean isActive() {
+        return !deltaSessions.isEmpty();
+    }
+    
+    public boolean takesDeltas(Session session) {
+        return deltaSessions.contains(session);
+    }
+    
+    public void requestSnapshot(Session session) {
+        if (deltaSessions.contains(session)) {
+            needSnapshot.add(session);
+        }
+    }
+    
+    /* true at most once per request for a snapshot */
+    public boolean takeSnapshotRequest(Session session) {
+        return needSnapshot.remove(session);
+    }
+    
+    /* record the table as it is now, returning what changed since the last update, all of it at first */
+    public JsonNode update(Table table, ObjectMapper mapper) {
+        seq++;
+        if (last == null || last.seats.length != table.getPlayers().length) {
+            last = new Sent(table);
+            return mapper.valueToTree(table);
+        }
+        return last.update(table, mapper);
+    }
+    
+    /* nobody is taking deltas, so no need to hang on to the state */
+    public void reset() {
+        last = null;
+    }
+    
+    public long getSeq() {
+        return seq;
+    }
+    
+    /* bets up to the last one that isn't zero, as TableJsonModule writes them */
+    private static int[] trimBets(int[] bets) {
+        if (bets == null) {
+            return null;
+        }
+        int count = bets.length;
+        while (count > 0 && bets[count - 1] == 0) {
+            count--;
+        }
+        return Arrays.copyOf(bets, count);
+    }
+    
+    private static boolean sameCard(Card a, Card b) {
+        return a == b || (a != null && b != null && a.getValue() == b.getValue() && a.getSuit() == b.getSuit());
+    }
+    
+    /**
+     * The values of the table as it was last sent, each updated as changes to it are found.
+     *
+     */
+    private static class Sent {
+        // the table's number fields, in this order
+        private static final String[] NUMBERS = { "dealer", "nextToBet", "currentBet", "lastRaise", "bigBlind",
+                "smallBlind", "minimumBuyin", "numPots", "potLevel", "maximumBet", "minimumRaise" };
+        
+        private final int[] numbers;
+        private String state;
+        private final Player[] seats;
+        private Card[] cards;
+        // pot, bet limit and player mask for each pot up to the last one in use
+        private int[] pots;
+        
+        Sent(Table table) {
+            numbers = numbers(table);
+            state = state(table);
+            seats = new Player[table.getPlayers().length];
+            for (int i = 0; i < seats.length; i++) {
+                seats[i] = copy(table.getPlayers()[i]);
+            }
+            cards = table.getCards().clone();
+            pots = pots(table);
+        }
+        
+        JsonNode update(Table table, ObjectMapper mapper) {
+            ObjectNode changes = NODES.objectNode();
+            int[] now = numbers(table);
+            for (int i = 0; i < now.length; i++) {
+                if (now[i] != numbers[i]) {
+                    changes.put(NUMBERS[i], now[i]);
+                    numbers[i] = now[i];
+                }
+            }
+            String nowState = state(table);
+            if (nowState == null ? state != null : !nowState.equals(state)) {
+                changes.put("state", nowState);
+                state = nowState;
+            }
+            ObjectNode players = NODES.objectNode();
+            for (int i = 0; i < seats.length; i++) {
+                Player player = table.getPlayers()[i];
+                if (player == null && seats[i] == null) {
+                    continue;
+                }
+                if (player == null) {
+                    players.putNull(Integer.toString(i));
+                } else if (seats[i] == null) {
+                    players.set(Integer.toString(i), mapper.valueToTree(player));
+                } else {
+                    ObjectNode change = changes(seats[i], player);
+                    if (change.size() == 0) {
+                        continue;
+                    }
+                    players.set(Integer.toString(i), change);
+                }
+                seats[i] = copy(player);
+            }
+            if (players.size() != 0) {
+                changes.set("players", players);
+            }
+            Card[] nowCards = table.getCards();
+            boolean cardsChanged = nowCards.length != cards.length;
+            for (int i = 0; !cardsChanged && i < cards.length; i++) {
+                cardsChanged = !sameCard(cards[i], nowCards[i]);
+            }
+            if (cardsChanged) {
+                changes.set("cards", mapper.valueToTree(nowCards));
+                cards = nowCards.clone();
+            }
+            int[] nowPots = pots(table);
+            if (!Arrays.equals(nowPots, pots)) {
+                ArrayNode array = changes.putArray("pots");
+                for (int i = 0; i < nowPots.length / 3; i++) {
+                    array.add(mapper.valueToTree(table.getPots()[i]));
+                }
+                pots = nowPots;
+            }
+            return changes;
+        }
+        
+        /* the fields of a seat's player that changed */
+        private static ObjectNode changes(Player before, Player after) {
+            ObjectNode changes = NODES.objectNode();
+            if (after.getName() == null ? before.getName() != null : !after.getName().equals(before.getName())) {
+                changes.put("name", after.getName());
+            }
+            if (after.getChips() != before.getChips()) {
+                changes.put("chips", after.getChips());
+            }
+            if (after.getBuyIns() != before.getBuyIns()) {
+                changes.put("buyIns", after.getBuyIns());
+            }
+            int[] bets = trimBets(after.getBets());
+            if (!Arrays.equals(bets, before.getBets())) {
+                if (bets == null) {
+                    changes.putNull("bets");
+                } else {
+                    ArrayNode array = changes.putArray("bets");
+                    for (int bet : bets) {
+                        array.add(bet);
+                    }
+                }
+            }
+            if (after.isCheckedCalled() != before.isCheckedCalled()) {
+                changes.put("checkedCalled", after.isCheckedCalled());
+            }
+            if (after.isFolded() != before.isFolded()) {
+                changes.put("folded", after.isFolded());
+            }
+            if (after.isPaused() != before.isPaused()) {
+                changes.put("paused", after.isPaused());
+            }
+            if (after.isAllIn() != before.isAllIn()) {
+                changes.put("allIn", after.isAllIn());
+            }
+            return changes;
+        }
+        
+        /* what we compare of a player, with the bets trimmed as they are sent */
+        private static Player copy(Player player) {
+            if (player == null) {
+                return null;
+            }
+            Player copy = new Player(player.getName());
+            copy.setChips(player.getChips());
+            copy.setBuyIns(player.getBuyIns());
+            copy.setBets(trimBets(player.getBets()));
+            copy.setCheckedCalled(player.isCheckedCalled());
+            copy.setFolded(player.isFolded());
+            copy.setPaused(player.isPaused());
+            copy.setAllIn(player.isAllIn());
+            return copy;
+        }
+        
+        private static int[] numbers(Table table) {
+            return new int[] { table.getDealer(), table.getNextToBet(), table.getCurrentBet(), table.getLastRaise(),
+                    table.getBigBlind(), table.getSmallBlind(), table.getMinimumBuyin(), table.getNumPots(),
+                    table.getPotLevel(), table.getMaximumBet(), table.getMinimumRaise() };
+        }
+        
+        private static String state(Table table) {
+            return table.getState() == null ? null : table.getState().name();
+        }
+        
+        /* trailing empty pots aren't sent, as in TableJsonModule */
+        private static int[] pots(Table table) {
+            Table.Pot[] pots = table.getPots();
+            int[] values = new int[pots.length * 3];
+            int count = 0;
+            for (int i = 0; i < pots.length; i++) {
+                Table.Pot pot = pots[i];
+                if (pot == null) {
+                    continue;
+                }
+                int mask = 0;
+                boolean[] players = pot.getPlayers();
+                for (int p = 0; players != null && p < players.length; p++) {
+                    if (players[p]) {
+                        mask |= 1 << p;
+                    }
+                }
+                values[i * 3] = pot.getPot();
+                values[i * 3 + 1] = pot.getBetLimit();
+                values[i * 3 + 2] = mask;
+                if (pot.getPot() != 0 || pot.getBetLimit() != 0 || mask != 0) {
+                    count = i + 1;
+                }
+            }
+            return Arrays.copyOf(values, count * 3);
+        }
+    }
+}
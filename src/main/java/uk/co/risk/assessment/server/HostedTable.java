@@ -0,0 +1,76 @@
+package uk.co.risk.assessment.server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.risk.assessment.model.Game;
+
+/**
+ * One game being hosted by the server, the sessions watching it, and the executor that everything
+ * touching the game runs on. Commands for different tables run in parallel, commands for the same
+ * table run one at a time in the order they were submitted, so the game itself needs no locking.
+ *
+ */
+public class HostedTable {
+    private static final Logger LOG = LoggerFactory.getLogger(HostedTable.class);
+    
+    private final String id;
+    private final Game game;
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private final DeltaTracker deltas = new DeltaTracker();
+    private final Tracer.TableTrace trace;
+    private final TableExecutor executor;
+    
+    HostedTable(String id, Game game, Tracer.TableTrace trace, TableExecutor executor) {
+        this.id = id;
+        this.game = game;
+        this.trace = trace;
+        this.executor = executor;
+    }
+    
+    /* run something against this table's game on the table's executor */
+    public void submit(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Error running command on table {}", id, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Table {} is closed, dropping command", id);
+        }
+    }
+    
+    /* finishes anything already submitted, then lets any thread go */
+    void close() {
+        game.cancelRunout();
+        executor.shutdown();
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public Game getGame() {
+        return game;
+    }
+    
+    /* concurrent, so broadcasts can iterate it while sessions join and leave */
+    public Set<Session> getSessions() {
+        return sessions;
+    }
+    
+    public DeltaTracker getDeltas() {
+        return deltas;
+    }
+    
+    public Tracer.TableTrace getTrace() {
+        return trace;
+    }
+}
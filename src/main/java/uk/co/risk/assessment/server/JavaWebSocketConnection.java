@@ -0,0 +1,83 @@
+package uk.co.risk.assessment.server;
+
+import java.net.InetSocketAddress;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A connection to the Java-WebSocket server. It is kept as the WebSocket's attachment, so the
+ * server's callbacks can find it again.
+ *
+ */
+public class JavaWebSocketConnection implements Connection {
+    private static final Logger LOG = LoggerFactory.getLogger(JavaWebSocketConnection.class);
+    
+    private final WebSocket webSocket;
+    
+    public JavaWebSocketConnection(WebSocket webSocket) {
+        this.webSocket = webSocket;
+        webSocket.setAttachment(this);
+    }
+    
+    /* the connection for a WebSocket, null if it never opened */
+    public static Connection of(WebSocket webSocket) {
+        return webSocket.getAttachment();
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return webSocket.isOpen();
+    }
+    
+    @Override
+    public void send(String message) {
+        try {
+            webSocket.send(message);
+        } catch (WebsocketNotConnectedException e) {
+            // closed since we checked, its onClose will tidy up
+            LOG.debug("Not sending, connection closed");
+        }
+    }
+    
+    @Override
+    public void send(byte[] message) {
+        try {
+            webSocket.send(message);
+        } catch (WebsocketNotConnectedException e) {
+            LOG.debug("Not sending, connection closed");
+        }
+    }
+    
+    @Override
+    public int getQueuedFrames() {
+        if (webSocket instanceof WebSocketImpl) {
+            return ((WebSocketImpl) webSocket).outQueue.size();
+        }
+        return webSocket.hasBufferedData() ? 1 : 0;
+    }
+    
+    @Override
+    public void close() {
+        webSocket.close();
+    }
+    
+    @Override
+    public void close(int code, String reason) {
+        webSocket.close(code, reason);
+    }
+    
+    @Override
+    public void abort(int code, String reason) {
+        webSocket.closeConnection(code, reason);
+    }
+    
+    @Override
+    public String getRemoteAddress() {
+        InetSocketAddress address = webSocket.getRemoteSocketAddress();
+        return address == null ? null : address.getHostString();
+    }
+}
@@ -0,0 +1,68 @@
+package uk.co.risk.assessment.server;
+
+/**
+ * How far a connection may fall behind before its table updates are coalesced, and before it is
+ * given up on. Set from the environment:
+ *
+ * SEND_QUEUE_FRAMES - frames waiting to be written before updates are held back (default 32)
+ * SLOW_CLIENT_DISCONNECT_MS - how long a client can stay behind before it is disconnected (default 30000)
+ * SEND_FLUSH_MS - how often held back updates are retried (default 50)
+ *
+ */
+public class OutboundLimits {
+    
+    private final int maxQueuedFrames;
+    private final long disconnectMillis;
+    private final long flushMillis;
+    
+    public OutboundLimits(int maxQueuedFrames, long disconnectMillis, long flushMillis) {
+        if (maxQueuedFrames < 1 || disconnectMillis < 1 || flushMillis < 1) {
+            throw new IllegalArgumentException("Outbound limits must be positive");
+        }
+        this.maxQueuedFrames = maxQueuedFrames;
+        this.disconnectMillis = disconnectMillis;
+        this.flushMillis = flushMillis;
+    }
+    
+    public static OutboundLimits fromEnvironment() {
+        return new OutboundLimits(
+                (int) envLong("SEND_QUEUE_FRAMES", 32),
+                envLong("SLOW_CLIENT_DISCONNECT_MS", 30000),
+                envLong("SEND_FLUSH_MS", 50));
+    }
+    
+    private static long envLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number: " + value);
+        }
+    }
+    
+    /* once this many frames are waiting, updates are held back */
+    public int getMaxQueuedFrames() {
+        return maxQueuedFrames;
+    }
+    
+    /* one-off messages still go out until this many frames are waiting, then the client is dropped */
+    public int getHardLimitFrames() {
+        return maxQueuedFrames * 2;
+    }
+    
+    /* held back updates go out again once the backlog is down to this, so we don't flap at the limit */
+    public int getResumeFrames() {
+        return maxQueuedFrames / 2;
+    }
+    
+    public long getDisconnectMillis() {
+        return disconnectMillis;
+    }
+    
+    public long getFlushMillis() {
+        return flushMillis;
+    }
+}
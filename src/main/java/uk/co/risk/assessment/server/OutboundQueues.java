@@ -0,0 +1,138 @@
+package uk.co.risk.assessment.server;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Every connection's Outbox, plus the one thread that retries held back updates for connections
+ * that have fallen behind and drops those that never catch up. Also counts what's been coalesced
+ * and dropped, and logs a summary now and then while anyone is behind.
+ *
+ */
+public class OutboundQueues {
+    private static final Logger LOG = LoggerFactory.getLogger(OutboundQueues.class);
+    
+    private static final long STATS_INTERVAL_MILLIS = 60000;
+    
+    private final OutboundLimits limits;
+    private final Set<Outbox> outboxes = ConcurrentHashMap.newKeySet();
+    private final Set<Outbox> behind = ConcurrentHashMap.newKeySet();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+    private final LongAdder sentFrames = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "outbound-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long lastStats = System.currentTimeMillis();
+    
+    public OutboundQueues(OutboundLimits limits) {
+        this.limits = limits;
+    }
+    
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flush, limits.getFlushMillis(), limits.getFlushMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+    
+    public Outbox open(Connection connection) {
+        Outbox outbox = new Outbox(connection, this);
+        outboxes.add(outbox);
+        return outbox;
+    }
+    
+    public void close(Outbox outbox) {
+        outboxes.remove(outbox);
+        behind.remove(outbox);
+    }
+    
+    private void flush() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Iterator<Outbox> it = behind.iterator(); it.hasNext();) {
+                if (!it.next().flush(now)) {
+                    it.remove();
+                }
+            }
+            if (now - lastStats >= STATS_INTERVAL_MILLIS) {
+                lastStats = now;
+                if (!behind.isEmpty()) {
+                    LOG.info("{} of {} connections behind, {} frames queued (most {}), {} updates coalesced, {} slow clients disconnected",
+                            behind.size(), outboxes.size(), getQueuedFrames(), getMaxQueuedFrames(),
+                            getCoalesced(), getSlowDisconnects());
+                }
+            }
+        } catch (RuntimeException e) {
+            // don't let one bad connection stop the flusher for good
+            LOG.error("Error flushing outbound queues", e);
+        }
+    }
+    
+    void behind(Outbox outbox) {
+        behind.add(outbox);
+    }
+    
+    void coalesced() {
+        coalesced.increment();
+    }
+    
+    void slowDisconnect() {
+        slowDisconnects.increment();
+    }
+    
+    void sent(int bytes) {
+        sentFrames.increment();
+        sentBytes.add(bytes);
+    }
+    
+    public OutboundLimits getLimits() {
+        return limits;
+    }
+    
+    /* total frames waiting across all connections */
+    public long getQueuedFrames() {
+        long total = 0;
+        for (Outbox outbox : outboxes) {
+            total += outbox.getQueuedFrames();
+        }
+        return total;
+    }
+    
+    public int getMaxQueuedFrames() {
+        int max = 0;
+        for (Outbox outbox : outboxes) {
+            max = Math.max(max, outbox.getQueuedFrames());
+        }
+        return max;
+    }
+    
+    public int getBehindCount() {
+        return behind.size();
+    }
+    
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+    
+    public long getSlowDisconnects() {
+        return slowDisconnects.sum();
+    }
+    
+    public long getSentFrames() {
+        return sentFrames.sum();
+    }
+    
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+}
@@ -0,0 +1,150 @@
+package uk.co.risk.assessment.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The sending side of one connection. Both WebSocket servers queue every frame they are given
+ * without limit, so rather than handing them table updates a slow client can't keep up with, we
+ * stop at a bounded number of waiting frames and hold on to just the latest update until the
+ * client catches up. A client that stays behind too long is disconnected.
+ *
+ * Sends come from the table thread and the flusher, so they are synchronized to keep a held back
+ * update from overtaking a newer one.
+ *
+ */
+public class Outbox {
+    private static final Logger LOG = LoggerFactory.getLogger(Outbox.class);
+    
+    private final Connection connection;
+    private final OutboundQueues queues;
+    private final OutboundLimits limits;
+    
+    // the latest update held back while behind (a String or binary byte[]), and what to run to resync a delta client
+    private Object latest;
+    private Runnable resync;
+    // when we first held something back, 0 while keeping up
+    private long behindSince;
+    
+    Outbox(Connection connection, OutboundQueues queues) {
+        this.connection = connection;
+        this.queues = queues;
+        this.limits = queues.getLimits();
+    }
+    
+    /* send a one-off message that a later one can't replace, such as an ack or a snapshot */
+    public void send(String message) {
+        sendOneOff(message);
+    }
+    
+    public void send(byte[] message) {
+        sendOneOff(message);
+    }
+    
+    /* send a table update, or if behind, keep it in place of any update already held back */
+    public void sendUpdate(String message) {
+        offerUpdate(message);
+    }
+    
+    public void sendUpdate(byte[] message) {
+        offerUpdate(message);
+    }
+    
+    private synchronized void sendOneOff(Object message) {
+        if (getQueuedFrames() >= limits.getHardLimitFrames()) {
+            disconnect("Too far behind");
+            return;
+        }
+        write(message);
+    }
+    
+    private synchronized void offerUpdate(Object message) {
+        if (canSend()) {
+            write(message);
+        } else {
+            if (latest != null) {
+                queues.coalesced();
+            }
+            latest = message;
+        }
+    }
+    
+    /*
+     * false if updates are being held back. A delta client can't skip one, so when this is false it
+     * should be given resync() instead of the update.
+     */
+    public synchronized boolean canSend() {
+        if (behindSince != 0) {
+            return false;
+        }
+        if (getQueuedFrames() >= limits.getMaxQueuedFrames()) {
+            behindSince = System.currentTimeMillis();
+            queues.behind(this);
+            return false;
+        }
+        return true;
+    }
+    
+    /* for a delta client that missed updates: run once it has caught up, to bring it back in step */
+    public synchronized void resync(Runnable resync) {
+        this.resync = resync;
+        latest = null;
+    }
+    
+    /* called by the flusher while behind. Returns true if still behind. */
+    synchronized boolean flush(long now) {
+        if (!connection.isOpen()) {
+            latest = null;
+            resync = null;
+            return false;
+        }
+        if (getQueuedFrames() <= limits.getResumeFrames()) {
+            behindSince = 0;
+            if (latest != null) {
+                write(latest);
+                latest = null;
+            }
+            if (resync != null) {
+                resync.run();
+                resync = null;
+            }
+            return false;
+        }
+        if (now - behindSince > limits.getDisconnectMillis()) {
+            disconnect("Too slow to keep up");
+            return false;
+        }
+        return true;
+    }
+    
+    /* frames handed to the connection but not yet written to the network */
+    public int getQueuedFrames() {
+        return connection.getQueuedFrames();
+    }
+    
+    public synchronized boolean isBehind() {
+        return behindSince != 0;
+    }
+    
+    private void write(Object message) {
+        if (message instanceof String) {
+            String text = (String) message;
+            connection.send(text);
+            // characters rather than UTF-8 bytes, the same for everything but non-ASCII names
+            queues.sent(text.length());
+        } else {
+            byte[] bytes = (byte[]) message;
+            connection.send(bytes);
+            queues.sent(bytes.length);
+        }
+    }
+    
+    private void disconnect(String reason) {
+        LOG.warn("Disconnecting slow client: {} with {} frames queued", reason, getQueuedFrames());
+        latest = null;
+        resync = null;
+        queues.slowDisconnect();
+        // a close frame would only queue up behind everything else, so drop the connection outright
+        connection.abort(Connection.TRY_AGAIN_LATER, reason);
+    }
+}
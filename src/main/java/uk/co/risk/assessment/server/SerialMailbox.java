@@ -0,0 +1,63 @@
+package uk.co.risk.assessment.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A table's queue of tasks, run one at a time on threads borrowed from a shared executor. Whoever
+ * takes the count from zero schedules a drain; the drain runs a batch then reschedules itself if
+ * there's more, so a busy table can't starve the others sharing the pool.
+ *
+ */
+class SerialMailbox implements TableExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(SerialMailbox.class);
+    
+    private static final int BATCH = 64;
+    
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // tasks queued plus the one running
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean shutdown;
+    
+    SerialMailbox(Executor executor) {
+        this.executor = executor;
+    }
+    
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Mailbox is shut down");
+        }
+        tasks.add(task);
+        if (pending.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+    
+    private void drain() {
+        for (int i = 0; i < BATCH; i++) {
+            try {
+                tasks.poll().run();
+            } catch (RuntimeException e) {
+                LOG.error("Error running table task", e);
+            }
+            if (pending.decrementAndGet() == 0) {
+                return;
+            }
+        }
+        executor.execute(this::drain);
+    }
+    
+    /* nothing of our own to let go of, already queued tasks still run */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+}
@@ -0,0 +1,71 @@
+package uk.co.risk.assessment.server;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One open connection, its Outbox, and once it has logged in, the player using it and the table it is at.
+ * Player and table are written by whichever socket thread handles the login or logout and read by
+ * the table threads broadcasting, so neither is guarded by a lock.
+ *
+ */
+public class Session {
+    
+    private final Connection connection;
+    private final Outbox outbox;
+    // chose the binary protocol when connecting, rather than JSON
+    private final boolean binary;
+    private volatile String playerName;
+    private final AtomicReference<HostedTable> table = new AtomicReference<>();
+    
+    Session(Connection connection, Outbox outbox, boolean binary) {
+        this.connection = connection;
+        this.outbox = outbox;
+        this.binary = binary;
+    }
+    
+    public Connection getConnection() {
+        return connection;
+    }
+    
+    /* everything sent to the connection should go through here */
+    public Outbox getOutbox() {
+        return outbox;
+    }
+    
+    public boolean isBinary() {
+        return binary;
+    }
+    
+    /* null until logged in */
+    public String getPlayerName() {
+        return playerName;
+    }
+    
+    void setPlayerName(String playerName) {
+        this.playerName = playerName;
+    }
+    
+    /* null until logged in */
+    public HostedTable getTable() {
+        return table.get();
+    }
+    
+    /* sit at a table, returning the one we were at before */
+    public HostedTable moveTo(HostedTable newTable) {
+        return table.getAndSet(newTable);
+    }
+    
+    /* leave the table, returning it. Only one of a logout racing a close gets it back. */
+    public HostedTable takeTable() {
+        return table.getAndSet(null);
+    }
+    
+    public boolean isLoggedIn() {
+        return playerName != null;
+    }
+    
+    @Override
+    public String toString() {
+        return playerName == null ? "not logged in" : playerName;
+    }
+}
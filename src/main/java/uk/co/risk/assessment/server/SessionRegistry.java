@@ -0,0 +1,76 @@
+package uk.co.risk.assessment.server;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every open connection's session, looked up by connection or by the name of the player logged in
+ * on it. Both indexes are concurrent maps, so the socket worker threads can open and close sessions
+ * while table threads read them without anyone taking a lock.
+ *
+ */
+public class SessionRegistry {
+    
+    private final ConcurrentHashMap<Connection, Session> byConnection = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Session> byPlayer = new ConcurrentHashMap<>();
+    
+    public Session open(Connection conn, Outbox outbox, boolean binary) {
+        Session session = new Session(conn, outbox, binary);
+        byConnection.put(conn, session);
+        return session;
+    }
+    
+    /* the session for a connection, null if it has already been closed */
+    public Session get(Connection conn) {
+        return conn == null ? null : byConnection.get(conn);
+    }
+    
+    /* the session the player is logged in on, null if they aren't */
+    public Session find(String playerName) {
+        return byPlayer.get(playerName);
+    }
+    
+    /*
+     * record who is using a session, returning the session that was logged in as the same player
+     * until now so the caller can evict it. The swap is a single put, so of two logins racing for one
+     * name each sees a different predecessor and exactly one of them ends up owning the name.
+     */
+    public Session login(Session session, String playerName) {
+        logout(session);
+        session.setPlayerName(playerName);
+        Session previous = byPlayer.put(playerName, session);
+        return previous == session ? null : previous;
+    }
+    
+    /* forget who was using a session, leaving the connection open. Returns the player, if there was one. */
+    public String logout(Session session) {
+        String playerName = session.getPlayerName();
+        if (playerName != null) {
+            // only if it's still ours, a newer login for the same player may have replaced it
+            byPlayer.remove(playerName, session);
+            session.setPlayerName(null);
+        }
+        return playerName;
+    }
+    
+    /* remove a connection's session entirely, returning it so the caller can clean up after it */
+    public Session close(Connection conn) {
+        Session session = conn == null ? null : byConnection.remove(conn);
+        if (session != null) {
+            String playerName = session.getPlayerName();
+            if (playerName != null) {
+                byPlayer.remove(playerName, session);
+            }
+        }
+        return session;
+    }
+    
+    /* weakly consistent view, safe to iterate while sessions come and go */
+    public Collection<Session> getSessions() {
+        return byConnection.values();
+    }
+    
+    public int size() {
+        return byConnection.size();
+    }
+}
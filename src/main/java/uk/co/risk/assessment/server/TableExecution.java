@@ -0,0 +1,120 @@
+package uk.co.risk.assessment.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * How tables get their TableExecutor, chosen with TABLE_EXECUTION:
+ *
+ * thread - each table has a thread of its own, let go when the table is idle (the default)
+ * eventloop - tables share a pool of TABLE_THREADS threads (default one per core), each table
+ * queuing its tasks in a mailbox
+ * virtual - as eventloop, but with a virtual thread per drain of the mailbox. Needs Java 21, falls
+ * back to eventloop without it.
+ *
+ */
+public abstract class TableExecution {
+    private static final Logger LOG = LoggerFactory.getLogger(TableExecution.class);
+    
+    // how long an idle table keeps its own thread before letting it go
+    private static final long IDLE_THREAD_SECONDS = 60;
+    
+    public abstract TableExecutor newExecutor(String tableId);
+    
+    public abstract String getName();
+    
+    public static TableExecution fromEnvironment() {
+        String mode = System.getenv("TABLE_EXECUTION");
+        if (mode == null || mode.trim().isEmpty() || "thread".equalsIgnoreCase(mode.trim())) {
+            return dedicatedThreads();
+        } else if ("eventloop".equalsIgnoreCase(mode.trim())) {
+            return eventLoop(threadCount());
+        } else if ("virtual".equalsIgnoreCase(mode.trim())) {
+            TableExecution virtual = virtualThreads();
+            return virtual == null ? eventLoop(threadCount()) : virtual;
+        }
+        throw new IllegalArgumentException("TABLE_EXECUTION must be thread, eventloop or virtual: " + mode);
+    }
+    
+    private static int threadCount() {
+        String threads = System.getenv("TABLE_THREADS");
+        if (threads == null || threads.trim().isEmpty()) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return Integer.parseInt(threads.trim());
+    }
+    
+    public static TableExecution dedicatedThreads() {
+        return new TableExecution() {
+            @Override
+            public TableExecutor newExecutor(String tableId) {
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), r -> daemon(r, "table-" + tableId));
+                executor.allowCoreThreadTimeOut(true);
+                return new TableExecutor() {
+                    @Override
+                    public void execute(Runnable task) {
+                        executor.execute(task);
+                    }
+                    
+                    @Override
+                    public void shutdown() {
+                        executor.shutdown();
+                    }
+                };
+            }
+            
+            @Override
+            public String getName() {
+                return "thread";
+            }
+        };
+    }
+    
+    public static TableExecution eventLoop(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                r -> daemon(r, "table-loop-" + count.incrementAndGet()));
+        return mailboxes(pool, "eventloop (" + threads + " threads)");
+    }
+    
+    /* null if this JVM doesn't have virtual threads */
+    public static TableExecution virtualThreads() {
+        try {
+            // by reflection, as we still build for Java 8
+            ExecutorService pool = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return mailboxes(pool, "virtual");
+        } catch (ReflectiveOperationException e) {
+            LOG.warn("Virtual threads need Java 21, running tables on an event loop instead");
+            return null;
+        }
+    }
+    
+    private static TableExecution mailboxes(ExecutorService pool, String name) {
+        return new TableExecution() {
+            @Override
+            public TableExecutor newExecutor(String tableId) {
+                return new SerialMailbox(pool);
+            }
+            
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+    
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
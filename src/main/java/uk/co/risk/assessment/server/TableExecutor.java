@@ -0,0 +1,14 @@
+package uk.co.risk.assessment.server;
+
+/**
+ * Runs one table's tasks one at a time, in the order they were submitted.
+ *
+ */
+public interface TableExecutor {
+    
+    /* queue a task, throwing RejectedExecutionException once shut down */
+    void execute(Runnable task);
+    
+    /* finishes anything already submitted, then lets go of any thread */
+    void shutdown();
+}
@@ -0,0 +1,69 @@
+package uk.co.risk.assessment.server;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.risk.assessment.model.Game;
+
+/**
+ * All the tables being hosted, by ID. Tables are created when the first session joins them and
+ * closed when the last one leaves.
+ *
+ */
+public class TableRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(TableRegistry.class);
+    
+    public static final String DEFAULT_TABLE = "default";
+    
+    private final ConcurrentHashMap<String, HostedTable> tables = new ConcurrentHashMap<>();
+    private final Function<String, Game> gameFactory;
+    private final Tracer tracer;
+    private final TableExecution execution;
+    
+    public TableRegistry(Function<String, Game> gameFactory, Tracer tracer, TableExecution execution) {
+        this.gameFactory = gameFactory;
+        this.tracer = tracer;
+        this.execution = execution;
+    }
+    
+    /* add a session to a table, creating the table if needed. A null ID means the default table. */
+    public HostedTable join(String tableId, Session session) {
+        String id = tableId == null ? DEFAULT_TABLE : tableId;
+        // done inside compute so we can't race with the table being closed
+        return tables.compute(id, (key, table) -> {
+            if (table == null) {
+                LOG.info("Opening table {}", key);
+                table = new HostedTable(key, gameFactory.apply(key), tracer.forTable(key),
+                        execution.newExecutor(key));
+            }
+            table.getSessions().add(session);
+            return table;
+        });
+    }
+    
+    /* take a session off a table, closing the table if nobody is left watching it */
+    public void leave(HostedTable table, Session session) {
+        tables.computeIfPresent(table.getId(), (key, current) -> {
+            current.getSessions().remove(session);
+            current.getDeltas().removeSession(session);
+            if (current.getSessions().isEmpty()) {
+                LOG.info("Closing table {}", key);
+                current.close();
+                return null;
+            }
+            return current;
+        });
+    }
+    
+    public HostedTable get(String tableId) {
+        return tables.get(tableId == null ? DEFAULT_TABLE : tableId);
+    }
+    
+    public Collection<HostedTable> getTables() {
+        return tables.values();
+    }
+}
@@ -0,0 +1,94 @@
+package uk.co.risk.assessment.server;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Structured tracing of what goes on at tables, in place of logging every message. Tracing is
+ * decided once per action: begin() hands out a correlation ID shared by everything that action
+ * causes (the command, its result, every message sent out), or NONE if the action isn't traced.
+ * Tables can be flagged so every action is traced, otherwise a configurable fraction is sampled.
+ * Payloads are only rendered for traced actions, so with nothing flagged and no sampling the cost
+ * is a couple of field reads.
+ *
+ * Configured from TRACE_TABLES (comma separated table IDs to flag) and TRACE_SAMPLE_RATE (0 to 1).
+ * Output goes to the "uk.co.risk.assessment.trace" logger as key=value pairs.
+ *
+ */
+public class Tracer {
+    private static final Logger TRACE = LoggerFactory.getLogger("uk.co.risk.assessment.trace");
+    
+    public static final long NONE = 0;
+    
+    private final Set<String> flaggedTables;
+    private final double sampleRate;
+    
+    public Tracer(Set<String> flaggedTables, double sampleRate) {
+        this.flaggedTables = flaggedTables;
+        this.sampleRate = sampleRate;
+    }
+    
+    public static Tracer fromEnvironment() {
+        String tables = System.getenv("TRACE_TABLES");
+        Set<String> flagged = tables == null || tables.isEmpty() ? Collections.emptySet()
+                : new HashSet<>(Arrays.asList(tables.split(",")));
+        double sampleRate = 0;
+        try {
+            String rate = System.getenv("TRACE_SAMPLE_RATE");
+            if (rate != null) {
+                sampleRate = Double.parseDouble(rate);
+            }
+        } catch (NumberFormatException e) {
+            TRACE.warn("Invalid TRACE_SAMPLE_RATE, not sampling");
+        }
+        return new Tracer(flagged, sampleRate);
+    }
+    
+    public TableTrace forTable(String tableId) {
+        return new TableTrace(tableId, flaggedTables.contains(tableId));
+    }
+    
+    /* tracing for one table. Can be used from any thread. */
+    public class TableTrace {
+        private final String tableId;
+        private volatile boolean flagged;
+        private long lastId = 0;
+        
+        TableTrace(String tableId, boolean flagged) {
+            this.tableId = tableId;
+            this.flagged = flagged;
+        }
+        
+        public void setFlagged(boolean flagged) {
+            this.flagged = flagged;
+        }
+        
+        public boolean isFlagged() {
+            return flagged;
+        }
+        
+        /* correlation ID for a new action, NONE if we aren't tracing it */
+        public long begin() {
+            if (!flagged && (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+                return NONE;
+            }
+            synchronized (this) {
+                return ++lastId;
+            }
+        }
+        
+        /* payload's toString() is only called if the action is being traced */
+        public void event(long id, String event, String playerName, Object payload) {
+            if (id != NONE) {
+                TRACE.info("table={} id={} event={} player={} payload={}", tableId, id, event, playerName,
+                        payload);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package uk.co.risk.assessment.server;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xnio.IoUtils;
+
+import io.undertow.websockets.core.WebSocketCallback;
+import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.core.WebSockets;
+
+/**
+ * A connection to the Undertow WebSocket endpoint. Undertow queues sends on the channel itself, so
+ * we count sends until their callback comes back to know how far behind the client is.
+ *
+ */
+public class UndertowConnection implements Connection, WebSocketCallback<Void> {
+    
+    private final WebSocketChannel channel;
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    public UndertowConnection(WebSocketChannel channel) {
+        this.channel = channel;
+    }
+    
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen() && !channel.isCloseFrameSent();
+    }
+    
+    @Override
+    public void send(String message) {
+        if (isOpen()) {
+            queued.incrementAndGet();
+            WebSockets.sendText(message, channel, this);
+        }
+    }
+    
+    @Override
+    public void send(byte[] message) {
+        if (isOpen()) {
+            queued.incrementAndGet();
+            WebSockets.sendBinary(ByteBuffer.wrap(message), channel, this);
+        }
+    }
+    
+    @Override
+    public void complete(WebSocketChannel channel, Void context) {
+        queued.decrementAndGet();
+    }
+    
+    @Override
+    public void onError(WebSocketChannel channel, Void context, Throwable throwable) {
+        // the channel is closed by now, its close task will tidy up
+        queued.decrementAndGet();
+    }
+    
+    @Override
+    public int getQueuedFrames() {
+        return queued.get();
+    }
+    
+    @Override
+    public void close() {
+        close(NORMAL, "");
+    }
+    
+    @Override
+    public void close(int code, String reason) {
+        if (isOpen()) {
+            WebSockets.sendClose(code, reason, channel, null);
+        }
+    }
+    
+    @Override
+    public void abort(int code, String reason) {
+        IoUtils.safeClose(channel);
+    }
+    
+    @Override
+    public String getRemoteAddress() {
+        InetSocketAddress address = channel.getSourceAddress();
+        return address == null ? null : address.getHostString();
+    }
+}
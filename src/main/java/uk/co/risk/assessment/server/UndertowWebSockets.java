@@ -0,0 +1,99 @@
+package uk.co.risk.assessment.server;
+
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.websockets.WebSocketConnectionCallback;
+import io.undertow.websockets.core.AbstractReceiveListener;
+import io.undertow.websockets.core.BufferedBinaryMessage;
+import io.undertow.websockets.core.BufferedTextMessage;
+import io.undertow.websockets.core.WebSocketChannel;
+import io.undertow.websockets.core.WebSockets;
+import io.undertow.websockets.spi.WebSocketHttpExchange;
+
+import static io.undertow.Handlers.websocket;
+
+/**
+ * The game's WebSocket endpoint on Undertow, so sockets and static content share the one listener,
+ * XNIO worker and buffer pool. Upgrade requests on any path become connections for the handler,
+ * anything else goes on to the next handler. Messages arrive on the IO threads, as they do on
+ * Java-WebSocket's decoder threads.
+ *
+ */
+public final class UndertowWebSockets {
+    private static final Logger LOG = LoggerFactory.getLogger(UndertowWebSockets.class);
+    
+    // far bigger than any message a client sends us
+    private static final long MAX_MESSAGE_BYTES = 65536;
+    
+    private UndertowWebSockets() {
+    }
+    
+    public static HttpHandler handler(ConnectionHandler handler, HttpHandler next) {
+        return websocket(new Callback(handler), next);
+    }
+    
+    private static class Callback implements WebSocketConnectionCallback {
+        private final ConnectionHandler handler;
+        
+        Callback(ConnectionHandler handler) {
+            this.handler = handler;
+        }
+        
+        @Override
+        public void onConnect(WebSocketHttpExchange exchange, WebSocketChannel channel) {
+            UndertowConnection connection = new UndertowConnection(channel);
+            handler.opened(connection, ConnectionHandler.wantsBinary(exchange.getQueryString()));
+            // however the channel goes, a close frame or just dropped
+            channel.addCloseTask(closed -> handler.closed(connection));
+            channel.getReceiveSetter().set(new Receiver(handler, connection));
+            channel.resumeReceives();
+        }
+    }
+    
+    private static class Receiver extends AbstractReceiveListener {
+        private final ConnectionHandler handler;
+        private final Connection connection;
+        
+        Receiver(ConnectionHandler handler, Connection connection) {
+            this.handler = handler;
+            this.connection = connection;
+        }
+        
+        @Override
+        protected void onFullTextMessage(WebSocketChannel channel, BufferedTextMessage message) {
+            handler.received(connection, message.getData());
+        }
+        
+        @Override
+        @SuppressWarnings("deprecation") // Pooled, which is still all BufferedBinaryMessage gives us
+        protected void onFullBinaryMessage(WebSocketChannel channel, BufferedBinaryMessage message) {
+            org.xnio.Pooled<ByteBuffer[]> data = message.getData();
+            try {
+                handler.received(connection, WebSockets.mergeBuffers(data.getResource()));
+            } finally {
+                data.free();
+            }
+        }
+        
+        @Override
+        protected long getMaxTextBufferSize() {
+            return MAX_MESSAGE_BYTES;
+        }
+        
+        @Override
+        protected long getMaxBinaryBufferSize() {
+            return MAX_MESSAGE_BYTES;
+        }
+        
+        @Override
+        protected void onError(WebSocketChannel channel, Throwable error) {
+            LOG.error("Error on connection {}", connection.getRemoteAddress(), error);
+            // closes the channel, the session goes with its close task
+            super.onError(channel, error);
+        }
+    }
+}
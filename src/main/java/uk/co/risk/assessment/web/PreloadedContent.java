@@ -0,0 +1,234 @@
+package uk.co.risk.assessment.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ETagUtils;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.MimeMappings;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Serves www from memory. Every file is read once at startup into a direct buffer, and text
+ * compressed there and then with gzip, so a request costs a map lookup and a write straight from
+ * the buffer with nothing read, copied or compressed. A pre-built .br or .gz file next to one
+ * (from the client build) is used for that encoding rather than compressing it ourselves; there is
+ * no Brotli in the JDK, so without .br files there is only gzip.
+ *
+ * Files with a content hash in their name, like static/js/main.37c27e39.js, never change and are
+ * cached for good. Everything else, such as index.html and bundle.min.js, is cached but checked
+ * each time, which with its ETag costs a 304 and no body. Changes to www need a restart.
+ *
+ */
+public class PreloadedContent implements HttpHandler {
+    
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+    // main.37c27e39.js, main.e3deca4a.css.map
+    private static final Pattern HASHED = Pattern.compile(".*\\.[0-9a-f]{8,}\\.[^/]+");
+    // below this compressing hardly saves anything
+    private static final int MIN_COMPRESS_BYTES = 256;
+    
+    private final Map<String, StaticAsset> assets;
+    
+    PreloadedContent(Map<String, StaticAsset> assets) {
+        this.assets = assets;
+    }
+    
+    public static PreloadedContent load(Path root) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        Map<String, StaticAsset> assets = new HashMap<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".br") || name.endsWith(".gz")) {
+                // sidecars, loaded with the file they are for
+                continue;
+            }
+            String path = "/" + root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+            assets.put(path, load(file, path));
+        }
+        return new PreloadedContent(assets);
+    }
+    
+    private static StaticAsset load(Path file, String path) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        String contentType = contentType(file.getFileName().toString());
+        byte[] gzip = sidecar(file, ".gz");
+        if (gzip == null && compressible(contentType) && content.length >= MIN_COMPRESS_BYTES) {
+            gzip = gzip(content);
+            // not worth a second copy, or making clients inflate it, for a few percent
+            if (gzip.length > content.length * 9 / 10) {
+                gzip = null;
+            }
+        }
+        byte[] brotli = sidecar(file, ".br");
+        return new StaticAsset(contentType, HASHED.matcher(path).matches() ? IMMUTABLE : REVALIDATE, tag(content),
+                direct(content), gzip == null ? null : direct(gzip), brotli == null ? null : direct(brotli));
+    }
+    
+    private static byte[] sidecar(Path file, String suffix) throws IOException {
+        Path sidecar = file.resolveSibling(file.getFileName() + suffix);
+        return Files.isRegularFile(sidecar) ? Files.readAllBytes(sidecar) : null;
+    }
+    
+    private static String contentType(String name) {
+        int dot = name.lastIndexOf('.');
+        String extension = dot == -1 ? "" : name.substring(dot + 1).toLowerCase();
+        String type = MimeMappings.DEFAULT.getMimeType(extension);
+        if (type != null) {
+            return type;
+        }
+        return extension.equals("map") ? "application/json" : "application/octet-stream";
+    }
+    
+    private static boolean compressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.endsWith("javascript") || contentType.endsWith("json")
+                || contentType.endsWith("+xml") || contentType.equals("image/x-icon");
+    }
+    
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3);
+        // done once at startup, so we can afford the best compression
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(content);
+        }
+        return out.toByteArray();
+    }
+    
+    private static ByteBuffer direct(byte[] content) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content).flip();
+        return buffer;
+    }
+    
+    /* the first 128 bits of the SHA-256 of the content, so the tag only changes when it does */
+    private static String tag(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder tag = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                tag.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return tag.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256", e);
+        }
+    }
+    
+    @Override
+    public void handleRequest(HttpServerExchange exchange) {
+        boolean head = Methods.HEAD.equals(exchange.getRequestMethod());
+        if (!head && !Methods.GET.equals(exchange.getRequestMethod())) {
+            exchange.setStatusCode(StatusCodes.METHOD_NOT_ALLOWED);
+            exchange.getResponseHeaders().put(Headers.ALLOW, "GET, HEAD");
+            exchange.endExchange();
+            return;
+        }
+        String path = exchange.getRelativePath();
+        if (path.isEmpty() || path.endsWith("/")) {
+            path += "index.html";
+        }
+        StaticAsset asset = assets.get(path);
+        if (asset == null) {
+            exchange.setStatusCode(StatusCodes.NOT_FOUND);
+            exchange.endExchange();
+            return;
+        }
+        HeaderValues accepted = exchange.getRequestHeaders().get(Headers.ACCEPT_ENCODING);
+        StaticAsset.Variant variant = asset.choose(accepts(accepted, "br"), accepts(accepted, "gzip"));
+        HeaderMap headers = exchange.getResponseHeaders();
+        headers.put(Headers.CACHE_CONTROL, asset.getCacheControl());
+        headers.put(Headers.ETAG, variant.getEtag().toString());
+        if (asset.isCompressed()) {
+            headers.put(Headers.VARY, Headers.ACCEPT_ENCODING_STRING);
+        }
+        if (!ETagUtils.handleIfNoneMatch(exchange, asset.getEtags(), true)) {
+            exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+            exchange.endExchange();
+            return;
+        }
+        headers.put(Headers.CONTENT_TYPE, asset.getContentType());
+        if (variant.getEncoding() != null) {
+            headers.put(Headers.CONTENT_ENCODING, variant.getEncoding());
+        }
+        headers.put(Headers.CONTENT_LENGTH, variant.getLength());
+        if (head) {
+            exchange.endExchange();
+        } else {
+            exchange.getResponseSender().send(variant.getContent());
+        }
+    }
+    
+    /* whether Accept-Encoding takes the encoding, named or by *, and not with q=0 */
+    private static boolean accepts(HeaderValues acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean any = null;
+        for (String header : acceptEncoding) {
+            for (String coding : header.split(",")) {
+                int semicolon = coding.indexOf(';');
+                String name = (semicolon == -1 ? coding : coding.substring(0, semicolon)).trim();
+                boolean wanted = semicolon == -1 || !refused(coding.substring(semicolon + 1));
+                if (name.equalsIgnoreCase(encoding)) {
+                    return wanted;
+                } else if (name.equals("*")) {
+                    any = wanted;
+                }
+            }
+        }
+        // * only counts for encodings not named
+        return Boolean.TRUE.equals(any);
+    }
+    
+    private static boolean refused(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("q")) {
+                try {
+                    return Double.parseDouble(pair[1].trim()) == 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+    
+    int getFileCount() {
+        return assets.size();
+    }
+    
+    long getBytesHeld() {
+        long bytes = 0;
+        for (StaticAsset asset : assets.values()) {
+            bytes += asset.getBytesHeld();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,114 @@
+package uk.co.risk.assessment.web;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.undertow.util.ETag;
+
+/**
+ * One file from www as it is sent: its content in a direct buffer, as it is and compressed if
+ * that's worth it, with the headers that go with it. Buffers are only ever sent as duplicates, so
+ * one asset can go out on any number of connections at once.
+ *
+ */
+class StaticAsset {
+    
+    private final String contentType;
+    private final String cacheControl;
+    private final Variant identity;
+    // null when not worth compressing, or no .br file was built for it
+    private final Variant gzip;
+    private final Variant brotli;
+    // all our tags, a client holding any of them is up to date
+    private final List<ETag> etags;
+    
+    StaticAsset(String contentType, String cacheControl, String tag, ByteBuffer identity, ByteBuffer gzip,
+            ByteBuffer brotli) {
+        this.contentType = contentType;
+        this.cacheControl = cacheControl;
+        this.identity = new Variant(null, new ETag(false, tag), identity);
+        // each encoding is a different representation, so needs a tag of its own
+        this.gzip = gzip == null ? null : new Variant("gzip", new ETag(false, tag + "-gzip"), gzip);
+        this.brotli = brotli == null ? null : new Variant("br", new ETag(false, tag + "-br"), brotli);
+        List<ETag> tags = new ArrayList<>();
+        for (Variant variant : new Variant[] { this.identity, this.gzip, this.brotli }) {
+            if (variant != null) {
+                tags.add(variant.getEtag());
+            }
+        }
+        etags = Collections.unmodifiableList(tags);
+    }
+    
+    /* the best the client will take */
+    Variant choose(boolean acceptsBrotli, boolean acceptsGzip) {
+        if (acceptsBrotli && brotli != null) {
+            return brotli;
+        }
+        if (acceptsGzip && gzip != null) {
+            return gzip;
+        }
+        return identity;
+    }
+    
+    boolean isCompressed() {
+        return gzip != null || brotli != null;
+    }
+    
+    String getContentType() {
+        return contentType;
+    }
+    
+    String getCacheControl() {
+        return cacheControl;
+    }
+    
+    List<ETag> getEtags() {
+        return etags;
+    }
+    
+    long getBytesHeld() {
+        long bytes = 0;
+        for (Variant variant : new Variant[] { identity, gzip, brotli }) {
+            if (variant != null) {
+                bytes += variant.content.capacity();
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * The content in one encoding.
+     *
+     */
+    static class Variant {
+        // null for none
+        private final String encoding;
+        private final ETag etag;
+        private final ByteBuffer content;
+        
+        Variant(String encoding, ETag etag, ByteBuffer content) {
+            this.encoding = encoding;
+            this.etag = etag;
+            this.content = content;
+        }
+        
+        String getEncoding() {
+            return encoding;
+        }
+        
+        ETag getEtag() {
+            return etag;
+        }
+        
+        int getLength() {
+            return content.capacity();
+        }
+        
+        /* a view of the content of its own to send, leaving the shared buffer alone */
+        ByteBuffer getContent() {
+            return content.duplicate();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package uk.co.risk.assessment.web;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.resource.PathResourceManager;
+
+import static io.undertow.Handlers.resource;
+
+/**
+ * How the client in www is served, chosen with STATIC_CONTENT:
+ *
+ * disk - read from disk on each request by Undertow's resource handler (the default)
+ * preload - everything read and compressed once at startup and served from memory, with ETags and
+ * cache headers, see PreloadedContent
+ *
+ */
+public final class StaticContent {
+    private static final Logger LOG = LoggerFactory.getLogger(StaticContent.class);
+    
+    // files at least this big are sent by the resource handler with transferTo
+    private static final long TRANSFER_MIN_SIZE = 100;
+    
+    private StaticContent() {
+    }
+    
+    public static HttpHandler fromEnvironment(Path root) throws IOException {
+        String mode = System.getenv("STATIC_CONTENT");
+        if (mode == null || mode.trim().isEmpty() || "disk".equalsIgnoreCase(mode.trim())) {
+            return resource(new PathResourceManager(root, TRANSFER_MIN_SIZE));
+        } else if ("preload".equalsIgnoreCase(mode.trim())) {
+            PreloadedContent content = PreloadedContent.load(root);
+            LOG.info("Preloaded {} static files, {} bytes in memory", content.getFileCount(), content.getBytesHeld());
+            return content;
+        }
+        throw new IllegalArgumentException("STATIC_CONTENT must be disk or preload: " + mode);
+    }
+}